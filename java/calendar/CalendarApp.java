@@ -1,13 +1,18 @@
 package calendar;
 
 import calendar.controller.CalendarController;
+import calendar.controller.journal.SyncPolicy;
 import calendar.controller.mode.HeadlessMode;
 import calendar.controller.mode.InteractiveMode;
 import calendar.controller.mode.Mode;
 import calendar.controller.mode.ModeFactory;
 import calendar.model.Calendar;
 import calendar.view.CalendarGUI;
+import java.io.IOException;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Main application class for the Calendar.
@@ -16,6 +21,12 @@ import java.time.ZoneId;
  *   --mode headless path-of-script-file : Runs in headless (script) mode.
  *   --mode interactive                  : Runs in interactive text mode.
  *   (no arguments)                      : Launches the GUI.
+ *
+ * Any of these may be preceded by --load path-of-snapshot-file, which loads the calendars of a
+ * snapshot written by the save command before the mode starts, and by --journal path-of-journal,
+ * which replays the mutations recorded in that journal and records every later one in it. Both
+ * are applied in the order given. --sync always|interval|none sets how often the journal is
+ * forced to disk (always by default).
  */
 public class CalendarApp {
   public static void main(String[] args) {
@@ -23,6 +34,56 @@ public class CalendarApp {
     Calendar defaultCalendar = new Calendar("Default Calendar", ZoneId.systemDefault());
     CalendarController controller = new CalendarController(defaultCalendar);
 
+    SyncPolicy sync = SyncPolicy.ALWAYS;
+    List<String[]> startup = new ArrayList<>();
+    int consumed = 0;
+    while (consumed < args.length && isStartupOption(args[consumed])) {
+      String option = args[consumed].toLowerCase();
+      if (consumed + 1 >= args.length) {
+        System.err.println(option + " requires a value.");
+        System.exit(1);
+      }
+      String value = args[consumed + 1];
+      if (option.equals("--sync")) {
+        try {
+          sync = SyncPolicy.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+          System.err.println("Invalid sync policy: " + value);
+          System.exit(1);
+        }
+      } else {
+        startup.add(new String[] {option, value});
+      }
+      consumed += 2;
+    }
+    args = Arrays.copyOfRange(args, consumed, args.length);
+
+    // Snapshots and journals are applied in the order given.
+    for (String[] step : startup) {
+      if (step[0].equals("--load")) {
+        try {
+          controller.loadSnapshot(step[1]);
+        } catch (Exception e) {
+          System.err.println("Could not load snapshot: " + e.getMessage());
+          System.exit(1);
+        }
+      } else {
+        try {
+          controller.openJournal(step[1], sync);
+        } catch (Exception e) {
+          System.err.println("Could not open journal: " + e.getMessage());
+          System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+          try {
+            controller.closeJournal();
+          } catch (IOException e) {
+            System.err.println("Could not close journal: " + e.getMessage());
+          }
+        }));
+      }
+    }
+
     if (args.length == 0) {
       javax.swing.SwingUtilities.invokeLater(() -> {
         CalendarGUI gui = new CalendarGUI(controller);
@@ -41,4 +102,9 @@ public class CalendarApp {
       System.exit(1);
     }
   }
+
+  private static boolean isStartupOption(String arg) {
+    return arg.equalsIgnoreCase("--load") || arg.equalsIgnoreCase("--journal")
+        || arg.equalsIgnoreCase("--sync");
+  }
 }
\ No newline at end of file
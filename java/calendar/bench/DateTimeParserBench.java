@@ -0,0 +1,69 @@
+package calendar.bench;
+
+import calendar.controller.DateTimeParser;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+/**
+ * Times DateTimeParser against the DateTimeFormatter parse the controller used before it, on the
+ * same command date-times and dates, and checks that both give the same values.
+ *
+ * Usage: DateTimeParserBench [inputs-per-round] [rounds]
+ *
+ * The first rounds let the JIT compile both paths; compare the later ones.
+ */
+public class DateTimeParserBench {
+  private static final DateTimeFormatter DT_FORMATTER =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+  private static final DateTimeFormatter DATE_FORMATTER =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+  public static void main(String[] args) {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    Random random = new Random(1);
+    String[] dateTimes = new String[count];
+    String[] dates = new String[count];
+    for (int i = 0; i < count; i++) {
+      LocalDateTime value = LocalDateTime.of(1990 + random.nextInt(60), 1 + random.nextInt(12),
+          1 + random.nextInt(28), random.nextInt(24), random.nextInt(60));
+      dateTimes[i] = value.format(DT_FORMATTER);
+      dates[i] = value.toLocalDate().format(DATE_FORMATTER);
+    }
+    for (int i = 0; i < count; i++) {
+      LocalDateTime expected = LocalDateTime.parse(dateTimes[i], DT_FORMATTER);
+      if (!DateTimeParser.parseDateTime(dateTimes[i]).equals(expected)
+          || !DateTimeParser.parseDate(dates[i]).equals(expected.toLocalDate())) {
+        System.out.println("Mismatch on " + dateTimes[i]);
+        System.exit(1);
+      }
+    }
+    System.out.printf("%,d inputs per round%n", count);
+    for (int round = 1; round <= rounds; round++) {
+      long checksum = 0;
+      long t0 = System.nanoTime();
+      for (String text : dateTimes) {
+        checksum += LocalDateTime.parse(text, DT_FORMATTER).getMinute();
+      }
+      long t1 = System.nanoTime();
+      for (String text : dateTimes) {
+        checksum -= DateTimeParser.parseDateTime(text).getMinute();
+      }
+      long t2 = System.nanoTime();
+      for (String text : dates) {
+        checksum += LocalDate.parse(text, DATE_FORMATTER).getDayOfMonth();
+      }
+      long t3 = System.nanoTime();
+      for (String text : dates) {
+        checksum -= DateTimeParser.parseDate(text).getDayOfMonth();
+      }
+      long t4 = System.nanoTime();
+      System.out.printf("round %d: date-time formatter %4d ms, parser %4d ms; "
+          + "date formatter %4d ms, parser %4d ms%s%n", round, (t1 - t0) / 1_000_000,
+          (t2 - t1) / 1_000_000, (t3 - t2) / 1_000_000, (t4 - t3) / 1_000_000,
+          checksum == 0 ? "" : " (checksum " + checksum + ")");
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package calendar.bench;
+
+import calendar.model.Calendar;
+import calendar.model.event.SingleEvent;
+import calendar.model.index.ZoneClock;
+import calendar.model.store.EventStore;
+import calendar.model.store.StorageMode;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap each storage mode uses per single event, as the growth in used heap after a
+ * full GC once it has been filled: for the event store alone, and for a whole calendar, which
+ * also keeps an id map and busy bitmaps in either mode.
+ *
+ * Usage: HeapPerEventBench [event-count]
+ *
+ * Each measurement runs in a JVM of its own, started with the options of this one, so that no
+ * garbage or heap sizing left by one skews the next. Events are 30 minutes apart and draw on
+ * 1000 names, 50 descriptions and 20 locations, built per event so that no two events share a
+ * string. Give the JVM heap for the indexed mode, e.g. -Xmx2g for the default million events.
+ */
+public class HeapPerEventBench {
+  private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+  private static final ZoneId ZONE = ZoneId.of("UTC");
+  private static final LocalDateTime BASE = LocalDateTime.of(2020, 1, 1, 0, 0);
+  private static final long BASE_MINUTES = BASE.toEpochSecond(ZoneOffset.UTC) / 60;
+  private static final String[] TARGETS = {"store", "calendar"};
+
+  public static void main(String[] args) throws Exception {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    if (args.length > 2) {
+      StorageMode mode = StorageMode.valueOf(args[2]);
+      System.out.println(args[1].equals("store")
+          ? storeBytesPerEvent(mode, count) : calendarBytesPerEvent(mode, count));
+      return;
+    }
+    System.out.printf("%,d events%n", count);
+    double[][] perEvent = new double[TARGETS.length][StorageMode.values().length];
+    for (int target = 0; target < TARGETS.length; target++) {
+      for (StorageMode mode : StorageMode.values()) {
+        double bytes = measure(count, TARGETS[target], mode);
+        perEvent[target][mode.ordinal()] = bytes;
+        System.out.printf("%-8s %-8s %6.1f bytes/event, %6.1f MB per million events%n", mode,
+            TARGETS[target], bytes, bytes * 1_000_000 / (1 << 20));
+      }
+    }
+    for (int target = 0; target < TARGETS.length; target++) {
+      System.out.printf("%s: indexed uses %.1f times the heap of columnar%n", TARGETS[target],
+          perEvent[target][StorageMode.INDEXED.ordinal()]
+              / perEvent[target][StorageMode.COLUMNAR.ordinal()]);
+    }
+  }
+
+  /** Runs one measurement in a new JVM and returns the bytes per event it reports. */
+  private static double measure(int count, String target, StorageMode mode) throws Exception {
+    List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(HeapPerEventBench.class.getName());
+    command.add(Integer.toString(count));
+    command.add(target);
+    command.add(mode.name());
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    List<String> output = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        output.add(line);
+      }
+    }
+    if (process.waitFor() != 0 || output.isEmpty()) {
+      throw new IllegalStateException("Measurement of " + mode + " " + target + " failed: "
+          + String.join("\n", output));
+    }
+    return Double.parseDouble(output.get(output.size() - 1));
+  }
+
+  /** Fills an event store of the given mode and returns the heap it holds per event. */
+  private static double storeBytesPerEvent(StorageMode mode, int count) {
+    long before = usedHeap();
+    EventStore store = mode.createStore(new ZoneClock(ZONE));
+    for (int i = 0; i < count; i++) {
+      long start = BASE_MINUTES + i * 30L;
+      store.add(event(i), i + 1, start, start + 20);
+    }
+    long after = usedHeap();
+    Reference.reachabilityFence(store);
+    return (double) (after - before) / count;
+  }
+
+  /** Fills a calendar of the given mode and returns the heap it holds per event. */
+  private static double calendarBytesPerEvent(StorageMode mode, int count) throws Exception {
+    long before = usedHeap();
+    Calendar calendar = new Calendar("Heap", ZONE, mode);
+    for (int i = 0; i < count; i++) {
+      calendar.addEvent(event(i), false);
+    }
+    long after = usedHeap();
+    Reference.reachabilityFence(calendar);
+    return (double) (after - before) / count;
+  }
+
+  /** Returns the i-th event, with strings of its own. */
+  private static SingleEvent event(int i) {
+    LocalDateTime start = BASE.plusMinutes(i * 30L);
+    return new SingleEvent("Meeting " + (i % 1000), start, start.plusMinutes(20),
+        "Notes " + (i % 50), "Room " + (i % 20), true);
+  }
+
+  /** Returns the heap in use after collecting garbage until it stops shrinking. */
+  private static long usedHeap() {
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 10; i++) {
+      System.gc();
+      long now = MEMORY.getHeapMemoryUsage().getUsed();
+      if (now >= used) {
+        return now;
+      }
+      used = now;
+    }
+    return used;
+  }
+}
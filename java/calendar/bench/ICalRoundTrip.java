@@ -0,0 +1,136 @@
+package calendar.bench;
+
+import calendar.controller.export.ICalCalendarExporter;
+import calendar.controller.importer.ICalCalendarImporter;
+import calendar.controller.importer.ImportReport;
+import calendar.model.Calendar;
+import calendar.model.event.Event;
+import calendar.model.event.RecurringEvent;
+import calendar.model.event.SingleEvent;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Exports a generated calendar to iCalendar and imports it back, into a calendar in the same
+ * zone and into one in another zone, and checks that every event keeps its instants and details.
+ *
+ * Usage: ICalRoundTrip [series-count]
+ *
+ * The calendar is in UTC and the other zone is Asia/Tokyo, nine hours ahead with no daylight
+ * saving, so series starting from 15:00 UTC fall on the next day there and their weekdays have
+ * to move. Exits with status 1 if either import differs from the calendar.
+ */
+public class ICalRoundTrip {
+  private static final ZoneId ZONE = ZoneId.of("UTC");
+  private static final ZoneId OTHER_ZONE = ZoneId.of("Asia/Tokyo");
+
+  public static void main(String[] args) throws Exception {
+    int seriesCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    Calendar calendar = generate(seriesCount, new Random(1));
+    Path file = Files.createTempFile("roundtrip", ".ics");
+    try {
+      long begin = System.nanoTime();
+      new ICalCalendarExporter().export(calendar, file.toString());
+      System.out.printf("export: %d series, %,d bytes in %.3f s%n", calendar.getSeries().size(),
+          Files.size(file), (System.nanoTime() - begin) / 1e9);
+      List<String> expected = dump(calendar);
+      boolean same = check(expected, file, ZONE) & check(expected, file, OTHER_ZONE);
+      if (!same) {
+        System.exit(1);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /** Imports the file into a calendar in the given zone and compares its events. */
+  private static boolean check(List<String> expected, Path file, ZoneId zone) throws Exception {
+    Calendar imported = new Calendar("Imported", zone);
+    ImportReport report = new ICalCalendarImporter().importInto(imported, file.toString());
+    List<String> actual = dump(imported);
+    boolean same = actual.equals(expected) && report.getRejected() == 0;
+    System.out.printf("import into %s: %d series, %d events, %d rejected, %.3f s, %s%n", zone,
+        imported.getSeries().size(), actual.size(), report.getRejected(),
+        report.getElapsedNanos() / 1e9, same ? "identical" : "DIFFERENT");
+    if (!same) {
+      for (String rejection : report.getRejections()) {
+        System.out.println("  " + rejection);
+      }
+      List<String> missing = new ArrayList<>(expected);
+      missing.removeAll(actual);
+      List<String> extra = new ArrayList<>(actual);
+      extra.removeAll(expected);
+      System.out.println("  missing " + missing.subList(0, Math.min(5, missing.size())));
+      System.out.println("  extra " + extra.subList(0, Math.min(5, extra.size())));
+    }
+    return same;
+  }
+
+  /** Returns every event of the calendar as a line of its details and UTC instants, sorted. */
+  private static List<String> dump(Calendar calendar) {
+    List<String> lines = new ArrayList<>();
+    for (Event event : calendar.getEventsBetween(
+        LocalDateTime.of(2000, 1, 1, 0, 0), LocalDateTime.of(2100, 1, 1, 0, 0))) {
+      lines.add(event.getName() + "|" + calendar.toEpochMinutes(event.getStart()) + "|"
+          + calendar.toEpochMinutes(event.getEnd()) + "|" + event.getDescription() + "|"
+          + event.getLocation() + "|" + event.isPublic());
+    }
+    Collections.sort(lines);
+    return lines;
+  }
+
+  /** Returns a calendar of weekly series, some with edited occurrences, and single events.
+   * Every series lies within one day in both zones. */
+  private static Calendar generate(int seriesCount, Random random) throws Exception {
+    Calendar calendar = new Calendar("Round trip", ZONE);
+    List<Event> batch = new ArrayList<>();
+    for (int i = 0; i < seriesCount; i++) {
+      Set<DayOfWeek> weekdays = EnumSet.noneOf(DayOfWeek.class);
+      for (DayOfWeek day : DayOfWeek.values()) {
+        if (random.nextInt(3) == 0) {
+          weekdays.add(day);
+        }
+      }
+      if (weekdays.isEmpty()) {
+        weekdays.add(DayOfWeek.MONDAY);
+      }
+      int dayStart = random.nextBoolean() ? 0 : 15;
+      int dayLength = dayStart == 0 ? 15 * 60 : 9 * 60;
+      int from = random.nextInt(dayLength - 1);
+      int to = from + 1 + random.nextInt(Math.min(180, dayLength - from - 1));
+      LocalDateTime date = LocalDateTime.of(2024, 1 + random.nextInt(12), 1 + random.nextInt(28),
+          dayStart, 0);
+      LocalDateTime start = date.plusMinutes(from);
+      LocalDateTime end = date.plusMinutes(to);
+      batch.add(random.nextBoolean()
+          ? new RecurringEvent("Series " + i, start, end, "Line 1\nLine 2; a,b", "Room " + i,
+              i % 5 != 0, weekdays, 1 + random.nextInt(260))
+          : new RecurringEvent("Series " + i, start, end, "", "", true, weekdays,
+              start.plusWeeks(1 + random.nextInt(260))));
+    }
+    for (int i = 0; i < seriesCount; i++) {
+      LocalDateTime start = LocalDateTime.of(2025, 1 + random.nextInt(12),
+          1 + random.nextInt(28), random.nextInt(24), random.nextInt(60));
+      batch.add(new SingleEvent("Single " + i, start, start.plusMinutes(random.nextInt(3000)),
+          "", "", random.nextBoolean()));
+    }
+    calendar.addEvents(batch, false);
+    int edited = 0;
+    for (Event event : calendar.getEventsBetween(
+        LocalDateTime.of(2025, 6, 1, 0, 0), LocalDateTime.of(2025, 6, 8, 0, 0))) {
+      if (event.getName().startsWith("Series") && edited++ % 3 == 0) {
+        calendar.editEventById(event.getId(), "location", "Moved");
+      }
+    }
+    return calendar;
+  }
+}
@@ -2,39 +2,74 @@ package calendar.controller;
 
 import calendar.controller.export.CSVCalendarExporter;
 import calendar.controller.export.CalendarExporter;
+import calendar.controller.export.ICalCalendarExporter;
+import calendar.controller.importer.CSVCalendarImporter;
+import calendar.controller.importer.CalendarImporter;
+import calendar.controller.importer.ICalCalendarImporter;
+import calendar.controller.importer.ImportReport;
+import calendar.controller.importer.ParallelCSVCalendarImporter;
+import calendar.controller.journal.Journal;
+import calendar.controller.journal.SyncPolicy;
 import calendar.model.Calendar;
+import calendar.model.CalendarSnapshot;
+import calendar.model.EventPage;
 import calendar.model.event.Event;
 import calendar.model.event.RecurringEvent;
 import calendar.model.event.SingleEvent;
+import calendar.model.index.MergingIterator;
+import calendar.model.index.MinuteBitmaps;
+import calendar.model.store.StorageMode;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.zip.CRC32;
 
 /**
  * Controller for calendar operations and command processing. This version delegates presentation
  * formatting to the view layer.
  */
 public class CalendarController {
+  private static final Comparator<Map.Entry<String, Event>> BY_EVENT_START =
+      Comparator.comparing(entry -> entry.getValue().getStart());
   private final CalendarManager calendarManager;
-  private final DateTimeFormatter dtFormatter;
-  private final DateTimeFormatter dateFormatter;
   private final CalendarExporter exporter;
+  private final CalendarExporter icalExporter;
+  private final CalendarImporter importer;
+  private final CalendarImporter parallelImporter;
+  private final CalendarImporter icalImporter;
   private Calendar activeCalendar;
+  private Journal journal;
 
   /** Constructs a CalendarController with the specified default calendar. */
   public CalendarController(Calendar defaultCalendar) {
     this.activeCalendar = defaultCalendar;
     calendarManager = new CalendarManager();
     // Add the default calendar to the manager.
-    calendarManager.createCalendar(
-        defaultCalendar.getName(), defaultCalendar.getTimezone().getId());
-    dtFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
-    dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    calendarManager.addCalendar(defaultCalendar);
     exporter = new CSVCalendarExporter();
+    icalExporter = new ICalCalendarExporter();
+    importer = new CSVCalendarImporter();
+    parallelImporter = new ParallelCSVCalendarImporter();
+    icalImporter = new ICalCalendarImporter();
   }
 
   /** Creates a new calendar with the given name and timezone. */
@@ -43,6 +78,24 @@ public class CalendarController {
       throw new Exception("Calendar with name " + calName + " already exists.");
     }
     calendarManager.createCalendar(calName, timezone);
+    journal("createCalendar", calName, timezone);
+  }
+
+  /** Creates a new calendar whose events are kept in the named storage mode (indexed or
+   * columnar). */
+  public void createCalendar(String calName, String timezone, String storageMode)
+      throws Exception {
+    if (calendarManager.getCalendar(calName) != null) {
+      throw new Exception("Calendar with name " + calName + " already exists.");
+    }
+    StorageMode mode;
+    try {
+      mode = StorageMode.valueOf(storageMode.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new Exception("Invalid storage mode: " + storageMode);
+    }
+    calendarManager.createCalendar(calName, timezone, mode);
+    journal("createCalendar", calName, timezone, storageMode);
   }
 
   /** Edits a property (name or timezone) of the specified calendar. */
@@ -51,6 +104,7 @@ public class CalendarController {
       throw new Exception("Calendar " + calName + " not found.");
     }
     calendarManager.editCalendar(calName, property, newValue);
+    journal("editCalendar", calName, property, newValue);
   }
 
   /** Sets the active calendar by its name. */
@@ -60,6 +114,7 @@ public class CalendarController {
       throw new Exception("Calendar " + calName + " not found.");
     }
     activeCalendar = cal;
+    journal("useCalendar", calName);
   }
 
   /** Creates a single timed event. */
@@ -72,10 +127,12 @@ public class CalendarController {
       boolean isPublic,
       boolean autoDecline)
       throws Exception {
-    LocalDateTime start = LocalDateTime.parse(startStr, dtFormatter);
-    LocalDateTime end = LocalDateTime.parse(endStr, dtFormatter);
+    LocalDateTime start = DateTimeParser.parseDateTime(startStr);
+    LocalDateTime end = DateTimeParser.parseDateTime(endStr);
     SingleEvent event = new SingleEvent(name, start, end, description, location, isPublic);
     activeCalendar.addEvent(event, autoDecline);
+    journal("createSingleEvent", name, startStr, endStr, description, location, isPublic,
+        autoDecline);
   }
 
   /** Creates a recurring timed event with a fixed number of occurrences. */
@@ -96,15 +153,15 @@ public class CalendarController {
     if (occurrences == 0) {
       return;
     }
-    LocalDateTime start = LocalDateTime.parse(startStr, dtFormatter);
-    LocalDateTime end = LocalDateTime.parse(endStr, dtFormatter);
+    LocalDateTime start = DateTimeParser.parseDateTime(startStr);
+    LocalDateTime end = DateTimeParser.parseDateTime(endStr);
     Set<DayOfWeek> weekdays = parseWeekdays(weekdaysStr);
     RecurringEvent recurringEvent =
         new RecurringEvent(
             name, start, end, description, location, isPublic, weekdays, occurrences);
-    for (SingleEvent instance : recurringEvent.getEventInstances()) {
-      activeCalendar.addEvent(instance, autoDecline);
-    }
+    activeCalendar.addEvents(Collections.singletonList(recurringEvent), autoDecline);
+    journal("createRecurringEventOccurrences", name, startStr, endStr, description, location,
+        isPublic, weekdaysStr, occurrences, autoDecline);
   }
 
   /** Creates a recurring timed event until a specified date-time. */
@@ -119,15 +176,15 @@ public class CalendarController {
       String untilStr,
       boolean autoDecline)
       throws Exception {
-    LocalDateTime start = LocalDateTime.parse(startStr, dtFormatter);
-    LocalDateTime end = LocalDateTime.parse(endStr, dtFormatter);
-    LocalDateTime until = LocalDateTime.parse(untilStr, dtFormatter);
+    LocalDateTime start = DateTimeParser.parseDateTime(startStr);
+    LocalDateTime end = DateTimeParser.parseDateTime(endStr);
+    LocalDateTime until = DateTimeParser.parseDateTime(untilStr);
     Set<DayOfWeek> weekdays = parseWeekdays(weekdaysStr);
     RecurringEvent recurringEvent =
         new RecurringEvent(name, start, end, description, location, isPublic, weekdays, until);
-    for (SingleEvent instance : recurringEvent.getEventInstances()) {
-      activeCalendar.addEvent(instance, autoDecline);
-    }
+    activeCalendar.addEvents(Collections.singletonList(recurringEvent), autoDecline);
+    journal("createRecurringEventUntil", name, startStr, endStr, description, location, isPublic,
+        weekdaysStr, untilStr, autoDecline);
   }
 
   /** Creates a single all-day event. */
@@ -139,11 +196,13 @@ public class CalendarController {
       boolean isPublic,
       boolean autoDecline)
       throws Exception {
-    LocalDate date = LocalDate.parse(dateStr, dateFormatter);
+    LocalDate date = DateTimeParser.parseDate(dateStr);
     LocalDateTime start = date.atTime(0, 0);
     LocalDateTime end = date.atTime(23, 59);
     SingleEvent event = new SingleEvent(name, start, end, description, location, isPublic);
     activeCalendar.addEvent(event, autoDecline);
+    journal("createSingleAllDayEvent", name, dateStr, description, location, isPublic,
+        autoDecline);
   }
 
   /** Creates a recurring all-day event with a fixed number of occurrences. */
@@ -163,16 +222,16 @@ public class CalendarController {
     if (occurrences == 0) {
       return;
     }
-    LocalDate date = LocalDate.parse(dateStr, dateFormatter);
+    LocalDate date = DateTimeParser.parseDate(dateStr);
     LocalDateTime start = date.atTime(0, 0);
     LocalDateTime end = date.atTime(23, 59);
     Set<DayOfWeek> weekdays = parseWeekdays(weekdaysStr);
     RecurringEvent recurringEvent =
         new RecurringEvent(
             name, start, end, description, location, isPublic, weekdays, occurrences);
-    for (SingleEvent instance : recurringEvent.getEventInstances()) {
-      activeCalendar.addEvent(instance, autoDecline);
-    }
+    activeCalendar.addEvents(Collections.singletonList(recurringEvent), autoDecline);
+    journal("createRecurringAllDayEventOccurrences", name, dateStr, description, location,
+        isPublic, weekdaysStr, occurrences, autoDecline);
   }
 
   /** Creates a recurring all-day event until a specified date. */
@@ -186,39 +245,49 @@ public class CalendarController {
       String untilDateStr,
       boolean autoDecline)
       throws Exception {
-    LocalDate date = LocalDate.parse(dateStr, dateFormatter);
+    LocalDate date = DateTimeParser.parseDate(dateStr);
     LocalDateTime start = date.atTime(0, 0);
     LocalDateTime end = date.atTime(23, 59);
-    LocalDate untilDate = LocalDate.parse(untilDateStr, dateFormatter);
+    LocalDate untilDate = DateTimeParser.parseDate(untilDateStr);
     LocalDateTime until = untilDate.atTime(23, 59);
     Set<DayOfWeek> weekdays = parseWeekdays(weekdaysStr);
     RecurringEvent recurringEvent =
         new RecurringEvent(name, start, end, description, location, isPublic, weekdays, until);
-    for (SingleEvent instance : recurringEvent.getEventInstances()) {
-      activeCalendar.addEvent(instance, autoDecline);
-    }
+    activeCalendar.addEvents(Collections.singletonList(recurringEvent), autoDecline);
+    journal("createRecurringAllDayEventUntil", name, dateStr, description, location, isPublic,
+        weekdaysStr, untilDateStr, autoDecline);
   }
 
   /** Edits a single event identified by name and start/end times. */
   public void editSingleEvent(
       String property, String eventName, String startStr, String endStr, String newValue)
       throws Exception {
-    LocalDateTime start = LocalDateTime.parse(startStr, dtFormatter);
-    LocalDateTime end = LocalDateTime.parse(endStr, dtFormatter);
+    LocalDateTime start = DateTimeParser.parseDateTime(startStr);
+    LocalDateTime end = DateTimeParser.parseDateTime(endStr);
     boolean found = activeCalendar.editSingleEvent(property, eventName, start, end, newValue);
     if (!found) {
       throw new Exception("No matching event found for editing.");
     }
+    journal("editSingleEvent", property, eventName, startStr, endStr, newValue);
+  }
+
+  /** Edits the event or series occurrence with the given id in the active calendar. */
+  public void editEventById(long id, String property, String newValue) throws Exception {
+    if (!activeCalendar.editEventById(id, property, newValue)) {
+      throw new Exception("No event with id " + id + " found for editing.");
+    }
+    journal("editEventById", id, property, newValue);
   }
 
   /** Edits events matching the given name and start time. */
   public void editEventsFrom(String property, String eventName, String startStr, String newValue)
       throws Exception {
-    LocalDateTime start = LocalDateTime.parse(startStr, dtFormatter);
+    LocalDateTime start = DateTimeParser.parseDateTime(startStr);
     int count = activeCalendar.editEventsFrom(property, eventName, start, newValue);
     if (count == 0) {
       throw new Exception("No matching events found");
     }
+    journal("editEventsFrom", property, eventName, startStr, newValue);
   }
 
   /** Edits all events with the given name. */
@@ -227,6 +296,48 @@ public class CalendarController {
     if (count == 0) {
       throw new Exception("No matching events found");
     }
+    journal("editEvents", property, eventName, newValue);
+  }
+
+  /** Deletes the event or series occurrence with the given id from the active calendar. */
+  public void deleteEventById(long id) throws Exception {
+    if (!activeCalendar.deleteEventById(id)) {
+      throw new Exception("No event with id " + id + " found for deletion.");
+    }
+    journal("deleteEventById", id);
+  }
+
+  /** Deletes a single event identified by name and start/end times. */
+  public void deleteSingleEvent(String eventName, String startStr, String endStr)
+      throws Exception {
+    LocalDateTime start = DateTimeParser.parseDateTime(startStr);
+    LocalDateTime end = DateTimeParser.parseDateTime(endStr);
+    if (!activeCalendar.deleteSingleEvent(eventName, start, end)) {
+      throw new Exception("No matching event found for deletion.");
+    }
+    journal("deleteSingleEvent", eventName, startStr, endStr);
+  }
+
+  /** Deletes the events with the given name starting at or after the given time and returns how
+   * many were deleted. */
+  public int deleteEventsFrom(String eventName, String startStr) throws Exception {
+    LocalDateTime start = DateTimeParser.parseDateTime(startStr);
+    int count = activeCalendar.deleteEventsFrom(eventName, start);
+    if (count == 0) {
+      throw new Exception("No matching events found");
+    }
+    journal("deleteEventsFrom", eventName, startStr);
+    return count;
+  }
+
+  /** Deletes all events with the given name and returns how many were deleted. */
+  public int deleteEvents(String eventName) throws Exception {
+    int count = activeCalendar.deleteEvents(eventName);
+    if (count == 0) {
+      throw new Exception("No matching events found");
+    }
+    journal("deleteEvents", eventName);
+    return count;
   }
 
   /**
@@ -238,23 +349,45 @@ public class CalendarController {
       String targetCalendarName,
       String targetDateTimeStr)
       throws Exception {
-    LocalDateTime sourceDateTime = LocalDateTime.parse(sourceDateTimeStr, dtFormatter);
+    LocalDateTime sourceDateTime = DateTimeParser.parseDateTime(sourceDateTimeStr);
     Event eventToCopy = activeCalendar.findEventByNameAndStart(eventName, sourceDateTime);
     if (eventToCopy == null) {
       throw new Exception("Event " + eventName + " not found at " + sourceDateTimeStr);
     }
+    copyTo(eventToCopy, targetCalendarName, targetDateTimeStr);
+    journal("copyEvent", eventName, sourceDateTimeStr, targetCalendarName, targetDateTimeStr);
+  }
+
+  /**
+   * Copies the event with the given id from the active calendar to the target calendar with a new
+   * start time.
+   */
+  public void copyEventById(long id, String targetCalendarName, String targetDateTimeStr)
+      throws Exception {
+    Event eventToCopy = activeCalendar.getEventById(id);
+    if (eventToCopy == null) {
+      throw new Exception("Event with id " + id + " not found.");
+    }
+    copyTo(eventToCopy, targetCalendarName, targetDateTimeStr);
+    journal("copyEventById", id, targetCalendarName, targetDateTimeStr);
+  }
+
+  /** Adds a copy of an event of the active calendar to the target calendar, starting at the
+   * given date-time and lasting as long as the original. */
+  private void copyTo(Event eventToCopy, String targetCalendarName, String targetDateTimeStr)
+      throws Exception {
     Calendar targetCal = calendarManager.getCalendar(targetCalendarName);
     if (targetCal == null) {
       throw new Exception("Target calendar " + targetCalendarName + " not found.");
     }
-    LocalDateTime targetDateTime = LocalDateTime.parse(targetDateTimeStr, dtFormatter);
-    long duration =
-        java.time.Duration.between(eventToCopy.getStart(), eventToCopy.getEnd()).toMinutes();
+    LocalDateTime targetDateTime = DateTimeParser.parseDateTime(targetDateTimeStr);
+    long duration = activeCalendar.toEpochMinutes(eventToCopy.getEnd())
+        - activeCalendar.toEpochMinutes(eventToCopy.getStart());
     SingleEvent copiedEvent =
         new SingleEvent(
             eventToCopy.getName(),
             targetDateTime,
-            targetDateTime.plusMinutes(duration),
+            targetCal.toLocalDateTime(targetCal.toEpochMinutes(targetDateTime) + duration),
             eventToCopy.getDescription(),
             eventToCopy.getLocation(),
             eventToCopy.isPublic());
@@ -267,7 +400,7 @@ public class CalendarController {
    */
   public void copyEventsOn(String dateStr, String targetCalendarName, String targetDateTimeStr)
       throws Exception {
-    LocalDate date = LocalDate.parse(dateStr, dateFormatter);
+    LocalDate date = DateTimeParser.parseDate(dateStr);
     List<Event> eventsToCopy = activeCalendar.getEventsOn(date);
     if (eventsToCopy.isEmpty()) {
       throw new Exception("No events on " + dateStr + " to copy.");
@@ -276,21 +409,9 @@ public class CalendarController {
     if (targetCal == null) {
       throw new Exception("Target calendar " + targetCalendarName + " not found.");
     }
-    LocalDateTime targetBase = LocalDateTime.parse(targetDateTimeStr, dtFormatter);
-    LocalDateTime earliest =
-        eventsToCopy.stream().map(Event::getStart).min(LocalDateTime::compareTo).orElse(targetBase);
-    long offset = java.time.Duration.between(earliest, targetBase).toMinutes();
-    for (Event e : eventsToCopy) {
-      SingleEvent copiedEvent =
-          new SingleEvent(
-              e.getName(),
-              e.getStart().plusMinutes(offset),
-              e.getEnd().plusMinutes(offset),
-              e.getDescription(),
-              e.getLocation(),
-              e.isPublic());
-      targetCal.addEvent(copiedEvent, true);
-    }
+    LocalDateTime targetBase = DateTimeParser.parseDateTime(targetDateTimeStr);
+    targetCal.addEvents(copiesAt(eventsToCopy, targetCal, targetBase), true);
+    journal("copyEventsOn", dateStr, targetCalendarName, targetDateTimeStr);
   }
 
   /**
@@ -300,8 +421,8 @@ public class CalendarController {
   public void copyEventsBetween(
       String startDateStr, String endDateStr, String targetCalendarName, String targetDateStr)
       throws Exception {
-    LocalDateTime start = LocalDate.parse(startDateStr, dateFormatter).atStartOfDay();
-    LocalDateTime end = LocalDate.parse(endDateStr, dateFormatter).atTime(23, 59);
+    LocalDateTime start = DateTimeParser.parseDate(startDateStr).atStartOfDay();
+    LocalDateTime end = DateTimeParser.parseDate(endDateStr).atTime(23, 59);
     List<Event> eventsToCopy = activeCalendar.getEventsBetween(start, end);
     if (eventsToCopy.isEmpty()) {
       throw new Exception("No events between " + startDateStr + " and " + endDateStr + " to copy.");
@@ -310,41 +431,408 @@ public class CalendarController {
     if (targetCal == null) {
       throw new Exception("Target calendar " + targetCalendarName + " not found.");
     }
-    LocalDateTime targetBase = LocalDate.parse(targetDateStr, dateFormatter).atStartOfDay();
-    LocalDateTime earliest =
-        eventsToCopy.stream().map(Event::getStart).min(LocalDateTime::compareTo).orElse(targetBase);
-    long offset = java.time.Duration.between(earliest, targetBase).toMinutes();
+    LocalDateTime targetBase = DateTimeParser.parseDate(targetDateStr).atStartOfDay();
+    targetCal.addEvents(copiesAt(eventsToCopy, targetCal, targetBase), true);
+    journal("copyEventsBetween", startDateStr, endDateStr, targetCalendarName, targetDateStr);
+  }
+
+  /**
+   * Returns copies of events from the active calendar for the target calendar, moved so that the
+   * earliest one starts at the target base. Offsets are taken between instants, so the copies
+   * keep their real spacing and durations when the two calendars are in different zones.
+   */
+  private List<Event> copiesAt(List<Event> eventsToCopy, Calendar targetCal,
+      LocalDateTime targetBase) {
+    long earliest = Long.MAX_VALUE;
+    for (Event e : eventsToCopy) {
+      earliest = Math.min(earliest, activeCalendar.toEpochMinutes(e.getStart()));
+    }
+    long offset = targetCal.toEpochMinutes(targetBase) - earliest;
+    List<Event> copiedEvents = new ArrayList<>();
     for (Event e : eventsToCopy) {
-      SingleEvent copiedEvent =
+      copiedEvents.add(
           new SingleEvent(
               e.getName(),
-              e.getStart().plusMinutes(offset),
-              e.getEnd().plusMinutes(offset),
+              targetCal.toLocalDateTime(activeCalendar.toEpochMinutes(e.getStart()) + offset),
+              targetCal.toLocalDateTime(activeCalendar.toEpochMinutes(e.getEnd()) + offset),
               e.getDescription(),
               e.getLocation(),
-              e.isPublic());
-      targetCal.addEvent(copiedEvent, true);
+              e.isPublic()));
     }
+    return copiedEvents;
   }
 
-  /** Exports the active calendar to a file using the configured exporter. */
+  /** Exports the active calendar to a file using the configured exporter, or as iCalendar if the
+   * file name ends in .ics. */
   public String exportCalendar(String fileName) throws Exception {
-    return exporter.export(activeCalendar, fileName);
+    return (isICalendar(fileName) ? icalExporter : exporter).export(activeCalendar, fileName);
+  }
+
+  /** Returns true if the file name ends in .ics, in any case, and so names an iCalendar file. */
+  public static boolean isICalendar(String fileName) {
+    return fileName.toLowerCase().endsWith(".ics");
+  }
+
+  /** Imports the events of a CSV file, or of an iCalendar file if its name ends in .ics, into the
+   * active calendar using the configured importer and returns the report of how many rows were
+   * imported and rejected. */
+  public ImportReport importCalendar(String fileName) throws Exception {
+    return importCalendar(fileName, false);
+  }
+
+  /** Imports the events of a CSV file into the active calendar, parsing it on all cores if asked
+   * to. Either way the calendar ends up the same. An iCalendar file is always read on one.
+   * The journal records the file's size and checksum with its path, so that a replay can tell
+   * whether the file still holds what was imported. */
+  public ImportReport importCalendar(String fileName, boolean parallel) throws Exception {
+    CalendarImporter chosen = isICalendar(fileName) ? icalImporter
+        : parallel ? parallelImporter
+        : importer;
+    ImportReport report;
+    long[] fingerprint = null;
+    try {
+      if (journal != null) {
+        fingerprint = fingerprintOf(Paths.get(fileName));
+      }
+      report = chosen.importInto(activeCalendar, fileName);
+    } catch (NoSuchFileException e) {
+      throw new Exception("File not found: " + fileName);
+    }
+    if (fingerprint != null) {
+      journal("importCalendar", report.getPath(), parallel, fingerprint[0], fingerprint[1]);
+    }
+    return report;
+  }
+
+  /** Replays an import, refusing to if the file no longer has the size and checksum it had when
+   * it was imported, since its rows would then give different events and ids than the ones
+   * later records refer to. */
+  private void replayImport(String path, boolean parallel, long size, long checksum)
+      throws Exception {
+    long[] fingerprint;
+    try {
+      fingerprint = fingerprintOf(Paths.get(path));
+    } catch (NoSuchFileException e) {
+      throw new Exception("File not found: " + path);
+    }
+    if (fingerprint[0] != size || fingerprint[1] != checksum) {
+      throw new Exception("File " + path + " has changed since it was imported.");
+    }
+    importCalendar(path, parallel);
+  }
+
+  /** Returns the size and the CRC-32 of the contents of a file. */
+  private static long[] fingerprintOf(Path path) throws IOException {
+    CRC32 checksum = new CRC32();
+    long size = 0;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+      while (channel.read(buffer) >= 0) {
+        buffer.flip();
+        size += buffer.remaining();
+        checksum.update(buffer);
+        buffer.clear();
+      }
+    }
+    return new long[] {size, checksum.getValue()};
+  }
+
+  /** Saves every calendar to a binary snapshot file and returns the file's absolute path. */
+  public String saveSnapshot(String fileName) throws Exception {
+    Path path = Paths.get(fileName).toAbsolutePath();
+    CalendarSnapshot.save(calendarManager.getCalendars(), path);
+    rebaseJournal(path);
+    return path.toString();
+  }
+
+  /** Replaces every calendar with those of a binary snapshot file and returns how many were
+   * loaded. The active calendar is the loaded one with the same name as the calendar that was
+   * active before, or the first loaded one if the snapshot has no calendar of that name. */
+  public int loadSnapshot(String fileName) throws Exception {
+    List<Calendar> loaded;
+    try {
+      loaded = CalendarSnapshot.load(Paths.get(fileName));
+    } catch (NoSuchFileException e) {
+      throw new Exception("Snapshot file not found: " + fileName);
+    }
+    if (loaded.isEmpty()) {
+      throw new Exception("Snapshot " + fileName + " holds no calendars.");
+    }
+    calendarManager.replaceCalendars(loaded);
+    Calendar active = calendarManager.getCalendar(activeCalendar.getName());
+    activeCalendar = active != null ? active : loaded.get(0);
+    rebaseJournal(Paths.get(fileName).toAbsolutePath());
+    return loaded.size();
+  }
+
+  /** Opens the journal at the given path, first replaying the mutations it records on top of the
+   * current calendars, and from then on records every mutation made through this controller in
+   * it before the mutation returns. Returns how many records were replayed. */
+  public int openJournal(String fileName, SyncPolicy policy) throws Exception {
+    if (journal != null) {
+      throw new Exception("A journal is already open.");
+    }
+    int[] replayed = {0};
+    journal = Journal.open(Paths.get(fileName), policy, record -> {
+      try {
+        replay(record);
+      } catch (Exception e) {
+        throw new Exception(
+            "Journal record " + (replayed[0] + 1) + " could not be replayed: " + e.getMessage());
+      }
+      replayed[0]++;
+    });
+    return replayed[0];
+  }
+
+  /** Forces and closes the journal, if one is open. */
+  public void closeJournal() throws IOException {
+    if (journal != null) {
+      journal.close();
+      journal = null;
+    }
+  }
+
+  /** Appends a mutation to the journal, if one is open. Arguments are recorded as strings, with
+   * nulls kept as nulls. */
+  private void journal(String operation, Object... args) throws IOException {
+    if (journal == null) {
+      return;
+    }
+    String[] record = new String[args.length + 1];
+    record[0] = operation;
+    for (int i = 0; i < args.length; i++) {
+      record[i + 1] = args[i] == null ? null : args[i].toString();
+    }
+    journal.append(record);
+  }
+
+  /** Replaces the journal with a record loading the snapshot just saved to or loaded from the
+   * given path, which holds every earlier mutation, and one selecting the active calendar. */
+  private void rebaseJournal(Path snapshot) throws IOException {
+    if (journal != null) {
+      journal.reset("loadSnapshot", snapshot.toString());
+      journal("useCalendar", activeCalendar.getName());
+    }
+  }
+
+  /** Applies one journal record by calling the method it names with its arguments. Called while
+   * the journal is being opened, so nothing replayed is recorded again. */
+  private void replay(String[] r) throws Exception {
+    switch (r[0]) {
+      case "createCalendar":
+        if (r.length == 4) {
+          createCalendar(r[1], r[2], r[3]);
+        } else {
+          createCalendar(r[1], r[2]);
+        }
+        break;
+      case "editCalendar":
+        editCalendar(r[1], r[2], r[3]);
+        break;
+      case "useCalendar":
+        useCalendar(r[1]);
+        break;
+      case "createSingleEvent":
+        createSingleEvent(r[1], r[2], r[3], r[4], r[5], Boolean.parseBoolean(r[6]),
+            Boolean.parseBoolean(r[7]));
+        break;
+      case "createRecurringEventOccurrences":
+        createRecurringEventOccurrences(r[1], r[2], r[3], r[4], r[5], Boolean.parseBoolean(r[6]),
+            r[7], Integer.parseInt(r[8]), Boolean.parseBoolean(r[9]));
+        break;
+      case "createRecurringEventUntil":
+        createRecurringEventUntil(r[1], r[2], r[3], r[4], r[5], Boolean.parseBoolean(r[6]),
+            r[7], r[8], Boolean.parseBoolean(r[9]));
+        break;
+      case "createSingleAllDayEvent":
+        createSingleAllDayEvent(r[1], r[2], r[3], r[4], Boolean.parseBoolean(r[5]),
+            Boolean.parseBoolean(r[6]));
+        break;
+      case "createRecurringAllDayEventOccurrences":
+        createRecurringAllDayEventOccurrences(r[1], r[2], r[3], r[4], Boolean.parseBoolean(r[5]),
+            r[6], Integer.parseInt(r[7]), Boolean.parseBoolean(r[8]));
+        break;
+      case "createRecurringAllDayEventUntil":
+        createRecurringAllDayEventUntil(r[1], r[2], r[3], r[4], Boolean.parseBoolean(r[5]),
+            r[6], r[7], Boolean.parseBoolean(r[8]));
+        break;
+      case "editSingleEvent":
+        editSingleEvent(r[1], r[2], r[3], r[4], r[5]);
+        break;
+      case "editEventById":
+        editEventById(Long.parseLong(r[1]), r[2], r[3]);
+        break;
+      case "editEventsFrom":
+        editEventsFrom(r[1], r[2], r[3], r[4]);
+        break;
+      case "editEvents":
+        editEvents(r[1], r[2], r[3]);
+        break;
+      case "deleteEventById":
+        deleteEventById(Long.parseLong(r[1]));
+        break;
+      case "deleteSingleEvent":
+        deleteSingleEvent(r[1], r[2], r[3]);
+        break;
+      case "deleteEventsFrom":
+        deleteEventsFrom(r[1], r[2]);
+        break;
+      case "deleteEvents":
+        deleteEvents(r[1]);
+        break;
+      case "copyEvent":
+        copyEvent(r[1], r[2], r[3], r[4]);
+        break;
+      case "copyEventById":
+        copyEventById(Long.parseLong(r[1]), r[2], r[3]);
+        break;
+      case "copyEventsOn":
+        copyEventsOn(r[1], r[2], r[3]);
+        break;
+      case "copyEventsBetween":
+        copyEventsBetween(r[1], r[2], r[3], r[4]);
+        break;
+      case "importCalendar":
+        replayImport(r[1], Boolean.parseBoolean(r[2]), Long.parseLong(r[3]),
+            Long.parseLong(r[4]));
+        break;
+      case "loadSnapshot":
+        loadSnapshot(r[1]);
+        break;
+      default:
+        throw new Exception("Unknown journal operation: " + r[0]);
+    }
   }
 
   /** Returns a list of events on the specified date.*/
   public List<Event> getEventsOn(String dateStr) {
-    LocalDate date = LocalDate.parse(dateStr, dateFormatter);
+    LocalDate date = DateTimeParser.parseDate(dateStr);
     return activeCalendar.getEventsOn(date);
   }
 
+  /** Returns the events of the given month grouped by the day they start on. */
+  public Map<LocalDate, List<Event>> getEventsInMonth(YearMonth month) {
+    return activeCalendar.getEventsByDay(month);
+  }
+
+  /** Returns the number of events starting on each day of the given month. */
+  public int[] countEventsInMonth(YearMonth month) {
+    return activeCalendar.countEventsByDay(month);
+  }
+
+  /** Returns the number of events starting on each day of the given year. */
+  public int[] countEventsInYear(Year year) {
+    return activeCalendar.countEventsByDay(year);
+  }
+
   /**
-   * Returns a list of events between the specified date-times.
+   * Returns the events starting on the given date across several calendars, each paired with the
+   * name of its calendar and merged lazily into start order. The date and the returned times are
+   * in the active calendar's zone. The name "all" selects every calendar.
    */
-  public List<Event> getEventsBetween(String startStr, String endStr) {
-    LocalDateTime start = LocalDateTime.parse(startStr, dtFormatter);
-    LocalDateTime end = LocalDateTime.parse(endStr, dtFormatter);
-    return activeCalendar.getEventsBetween(start, end);
+  public Iterator<Map.Entry<String, Event>> getEventsOn(String dateStr, List<String> calendarNames)
+      throws Exception {
+    LocalDate date = DateTimeParser.parseDate(dateStr);
+    long from = activeCalendar.toEpochMinutes(date.atStartOfDay());
+    long to = activeCalendar.toEpochMinutes(date.plusDays(1).atStartOfDay()) - 1;
+    List<Iterator<Map.Entry<String, Event>>> sources = new ArrayList<>();
+    for (Map.Entry<String, Calendar> entry : resolveCalendars(calendarNames).entrySet()) {
+      Calendar cal = entry.getValue();
+      List<Event> events =
+          cal.getEventsBetween(cal.toLocalDateTime(from), cal.toLocalDateTime(to));
+      events.removeIf(e -> cal.toEpochMinutes(e.getStart()) < from);
+      sources.add(tagged(entry.getKey(), cal, events.iterator()));
+    }
+    return new MergingIterator<>(sources, BY_EVENT_START);
+  }
+
+  /**
+   * Returns the events between the specified date-times across several calendars, each paired
+   * with the name of its calendar and merged lazily into start order. The date-times and the
+   * returned times are in the active calendar's zone.
+   */
+  public Iterator<Map.Entry<String, Event>> getEventsBetween(
+      String startStr, String endStr, List<String> calendarNames) throws Exception {
+    long from = activeCalendar.toEpochMinutes(DateTimeParser.parseDateTime(startStr));
+    long to = activeCalendar.toEpochMinutes(DateTimeParser.parseDateTime(endStr));
+    List<Iterator<Map.Entry<String, Event>>> sources = new ArrayList<>();
+    for (Map.Entry<String, Calendar> entry : resolveCalendars(calendarNames).entrySet()) {
+      Calendar cal = entry.getValue();
+      sources.add(tagged(entry.getKey(), cal,
+          cal.iterateEventsBetween(cal.toLocalDateTime(from), cal.toLocalDateTime(to))));
+    }
+    return new MergingIterator<>(sources, BY_EVENT_START);
+  }
+
+  /** Looks up the named calendars in the given order, expanding "all" to every calendar sorted
+   * by name. */
+  private Map<String, Calendar> resolveCalendars(List<String> calendarNames) throws Exception {
+    List<String> names = calendarNames;
+    if (calendarNames.size() == 1 && calendarNames.get(0).equalsIgnoreCase("all")) {
+      names = new ArrayList<>(calendarManager.getCalendarNames());
+      Collections.sort(names);
+    }
+    Map<String, Calendar> calendars = new LinkedHashMap<>();
+    for (String calName : names) {
+      Calendar cal = calendarManager.getCalendar(calName);
+      if (cal == null) {
+        throw new Exception("Calendar " + calName + " not found.");
+      }
+      calendars.put(calName, cal);
+    }
+    return calendars;
+  }
+
+  /** Wraps a sorted event iterator in one that pairs each event with its calendar name.
+   * Events of calendars in another zone are moved to the active calendar's zone as they are
+   * read. */
+  private Iterator<Map.Entry<String, Event>> tagged(
+      String calName, Calendar cal, Iterator<Event> it) {
+    Calendar display = activeCalendar;
+    boolean sameZone = cal.getTimezone().equals(display.getTimezone());
+    return new Iterator<Map.Entry<String, Event>>() {
+      @Override
+      public boolean hasNext() {
+        return it.hasNext();
+      }
+
+      @Override
+      public Map.Entry<String, Event> next() {
+        Event event = it.next();
+        if (!sameZone) {
+          SingleEvent moved = new SingleEvent(
+              event.getName(),
+              display.toLocalDateTime(cal.toEpochMinutes(event.getStart())),
+              display.toLocalDateTime(cal.toEpochMinutes(event.getEnd())),
+              event.getDescription(),
+              event.getLocation(),
+              event.isPublic());
+          moved.setId(event.getId());
+          event = moved;
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(calName, event);
+      }
+    };
+  }
+
+  /**
+   * Returns the events between the specified date-times, read lazily in start order.
+   */
+  public Iterator<Event> getEventsBetween(String startStr, String endStr) {
+    LocalDateTime start = DateTimeParser.parseDateTime(startStr);
+    LocalDateTime end = DateTimeParser.parseDateTime(endStr);
+    return activeCalendar.iterateEventsBetween(start, end);
+  }
+
+  /**
+   * Returns one page of the events between the specified date-times, resuming after the page
+   * that handed out the given token, or from the start of the range if the token is null.
+   */
+  public EventPage getEventsPage(String startStr, String endStr, int pageSize, String resumeToken) {
+    LocalDateTime start = DateTimeParser.parseDateTime(startStr);
+    LocalDateTime end = DateTimeParser.parseDateTime(endStr);
+    return activeCalendar.getEventsPage(start, end, pageSize, resumeToken);
   }
 
   /**
@@ -355,9 +843,20 @@ public class CalendarController {
     return calendar.view.CalendarView.formatBusyStatus(dateTimeStr, busy);
   }
 
+  /** Returns the groups of overlapping events in the active calendar, optionally limited to the
+   * events overlapping a range. */
+  public List<List<Event>> getConflicts(String startStr, String endStr) {
+    if (startStr == null) {
+      return activeCalendar.getConflicts();
+    }
+    LocalDateTime start = DateTimeParser.parseDateTime(startStr);
+    LocalDateTime end = DateTimeParser.parseDateTime(endStr);
+    return activeCalendar.getConflicts(start, end);
+  }
+
   /** Returns the busy status as a boolean for the specified date-time. */
   public boolean isBusy(String dateTimeStr) {
-    LocalDateTime dateTime = LocalDateTime.parse(dateTimeStr, dtFormatter);
+    LocalDateTime dateTime = DateTimeParser.parseDateTime(dateTimeStr);
     return activeCalendar.isBusy(dateTime);
   }
 
@@ -365,6 +864,87 @@ public class CalendarController {
     return calendarManager.getCalendarNames();
   }
 
+  /**
+   * Returns the start times of up to limit non-overlapping slots between the given date-times in
+   * which every named calendar is free for the given number of minutes. The busy bitmaps of the
+   * calendars are ORed together a word at a time for each day and scanned once for free runs. A
+   * slot also requires its final minute to be free, so an event of that length can be created
+   * there with autodecline. Days and slots are in the active calendar's zone; calendars in
+   * another zone contribute their events moved to the same instants in that zone.
+   */
+  public List<LocalDateTime> findFreeSlots(
+      List<String> calendarNames, int durationMinutes, String startStr, String endStr, int limit)
+      throws Exception {
+    if (durationMinutes <= 0) {
+      throw new IllegalArgumentException("Slot duration must be positive.");
+    }
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Slot count must be positive.");
+    }
+    List<Calendar> calendars = new ArrayList<>(resolveCalendars(calendarNames).values());
+    LocalDateTime start = DateTimeParser.parseDateTime(startStr);
+    LocalDateTime end = DateTimeParser.parseDateTime(endStr);
+    List<LocalDateTime> slots = new ArrayList<>();
+    LocalDateTime runStart = null;
+    long runLength = 0;
+    for (LocalDate date = start.toLocalDate();
+        !date.isAfter(end.toLocalDate()) && slots.size() < limit;
+        date = date.plusDays(1)) {
+      long[] busy = new long[MinuteBitmaps.WORDS_PER_DAY];
+      for (Calendar cal : calendars) {
+        if (cal.getTimezone().equals(activeCalendar.getTimezone())) {
+          long[] words = cal.getBusyMinutes(date);
+          for (int i = 0; i < busy.length; i++) {
+            busy[i] |= words[i];
+          }
+        } else {
+          markBusy(busy, date, cal);
+        }
+      }
+      int first = date.equals(start.toLocalDate()) ? MinuteBitmaps.minuteOfDay(start) : 0;
+      int last =
+          date.equals(end.toLocalDate())
+              ? MinuteBitmaps.minuteOfDay(end)
+              : MinuteBitmaps.MINUTES_PER_DAY - 1;
+      for (int minute = first; minute <= last && slots.size() < limit; minute++) {
+        if (MinuteBitmaps.isSet(busy, minute)) {
+          runStart = null;
+          runLength = 0;
+          continue;
+        }
+        if (runStart == null) {
+          runStart = date.atTime(minute / 60, minute % 60);
+        }
+        runLength++;
+        if (runLength > durationMinutes) {
+          slots.add(runStart);
+          runStart = null;
+          runLength = 0;
+        }
+      }
+    }
+    return slots;
+  }
+
+  /** Sets the minutes of a day of the active calendar in which a calendar in another zone has
+   * an event. */
+  private void markBusy(long[] busy, LocalDate date, Calendar cal) {
+    long dayStart = activeCalendar.toEpochMinutes(date.atStartOfDay());
+    long dayEnd = activeCalendar.toEpochMinutes(date.plusDays(1).atStartOfDay()) - 1;
+    for (Event event :
+        cal.getEventsBetween(cal.toLocalDateTime(dayStart), cal.toLocalDateTime(dayEnd))) {
+      LocalDateTime start = activeCalendar.toLocalDateTime(cal.toEpochMinutes(event.getStart()));
+      LocalDateTime end = activeCalendar.toLocalDateTime(cal.toEpochMinutes(event.getEnd()));
+      int from = start.toLocalDate().isBefore(date) ? 0 : MinuteBitmaps.minuteOfDay(start);
+      int to = end.toLocalDate().isAfter(date)
+          ? MinuteBitmaps.MINUTES_PER_DAY - 1
+          : MinuteBitmaps.minuteOfDay(end);
+      if (from <= to) {
+        MinuteBitmaps.setRange(busy, from, to);
+      }
+    }
+  }
+
   /** Helper method to parse a string of weekdays into a Set of DayOfWeek. */
   private Set<DayOfWeek> parseWeekdays(String weekdaysStr) {
     Set<DayOfWeek> weekdays = new HashSet<>();
@@ -1,9 +1,14 @@
 package calendar.controller;
 
 import calendar.model.Calendar;
+import calendar.model.store.StorageMode;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -13,13 +18,38 @@ public class CalendarManager {
 
   /** Creates a new calendar with the specified name and timezone. */
   public void createCalendar(String name, String timezoneStr) {
+    createCalendar(name, timezoneStr, StorageMode.INDEXED);
+  }
+
+  /** Creates a new calendar that keeps its events in the given storage mode. */
+  public void createCalendar(String name, String timezoneStr, StorageMode storageMode) {
     if (calendars.containsKey(name)) {
       throw new IllegalArgumentException("Calendar name must be unique.");
     }
-    Calendar cal = new Calendar(name, ZoneId.of(timezoneStr));
+    Calendar cal = new Calendar(name, ZoneId.of(timezoneStr), storageMode);
     calendars.put(name, cal);
   }
 
+  /** Adds an existing calendar under its name. */
+  public void addCalendar(Calendar cal) {
+    if (calendars.containsKey(cal.getName())) {
+      throw new IllegalArgumentException("Calendar name must be unique.");
+    }
+    calendars.put(cal.getName(), cal);
+  }
+
+  /** Replaces every calendar with the given ones, as when a snapshot is loaded. */
+  public void replaceCalendars(Collection<Calendar> replacements) {
+    Map<String, Calendar> byName = new HashMap<>();
+    for (Calendar cal : replacements) {
+      if (byName.put(cal.getName(), cal) != null) {
+        throw new IllegalArgumentException("Calendar name must be unique.");
+      }
+    }
+    calendars.clear();
+    calendars.putAll(byName);
+  }
+
   /** Edits an existing calendar's property. */
   public void editCalendar(String name, String property, String newValue) {
     Calendar cal = calendars.get(name);
@@ -44,6 +74,13 @@ public class CalendarManager {
     return new HashSet<>(calendars.keySet());
   }
 
+  /** Returns every calendar, ordered by name. */
+  public List<Calendar> getCalendars() {
+    List<Calendar> result = new ArrayList<>(calendars.values());
+    result.sort(Comparator.comparing(Calendar::getName));
+    return result;
+  }
+
   /** Returns the calendar with the specified name. */
   public Calendar getCalendar(String name) {
     return calendars.get(name);
@@ -0,0 +1,90 @@
+package calendar.controller;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+
+/** Parses the yyyy-MM-dd'T'HH:mm and yyyy-MM-dd formats of command arguments by reading the
+ * digits at their fixed offsets, without the field maps and resolution steps of a
+ * DateTimeFormatter. Text that is not in that plain form, or whose fields are out of range, is
+ * handed to the equivalent formatter, so it is accepted or rejected exactly as before and errors
+ * carry the same messages. */
+public final class DateTimeParser {
+  private static final DateTimeFormatter DATE_TIME =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+  private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+  private DateTimeParser() {}
+
+  /** Parses a date-time in the yyyy-MM-dd'T'HH:mm format. */
+  public static LocalDateTime parseDateTime(String text) {
+    if (text.length() == 16 && text.charAt(10) == 'T' && text.charAt(13) == ':') {
+      int hour = twoDigits(text, 11);
+      int minute = twoDigits(text, 14);
+      if (hour >= 0 && hour < 24 && minute >= 0 && minute < 60) {
+        LocalDate date = plainDate(text);
+        if (date != null) {
+          return LocalDateTime.of(date, LocalTime.of(hour, minute));
+        }
+      }
+    }
+    return LocalDateTime.parse(text, DATE_TIME);
+  }
+
+  /** Parses a date in the yyyy-MM-dd format. */
+  public static LocalDate parseDate(String text) {
+    if (text.length() == 10) {
+      LocalDate date = plainDate(text);
+      if (date != null) {
+        return date;
+      }
+    }
+    return LocalDate.parse(text, DATE);
+  }
+
+  /** Reads the yyyy-MM-dd date at the start of the text, or returns null if it is not a plain,
+   * valid date. Days past the end of the month are left to the formatter, which resolves them. */
+  private static LocalDate plainDate(String text) {
+    if (text.charAt(4) != '-' || text.charAt(7) != '-') {
+      return null;
+    }
+    int high = twoDigits(text, 0);
+    int low = twoDigits(text, 2);
+    int month = twoDigits(text, 5);
+    int day = twoDigits(text, 8);
+    if (high < 0 || low < 0 || month < 1 || month > 12 || day < 1) {
+      return null;
+    }
+    int year = high * 100 + low;
+    if (year == 0 || day > lengthOfMonth(year, month)) {
+      return null;
+    }
+    return LocalDate.of(year, month, day);
+  }
+
+  private static int lengthOfMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return Year.isLeap(year) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /** Returns the two-digit number at the offset, or -1 if either character is not a digit. */
+  private static int twoDigits(String text, int offset) {
+    int tens = text.charAt(offset) - '0';
+    int ones = text.charAt(offset + 1) - '0';
+    if (tens < 0 || tens > 9 || ones < 0 || ones > 9) {
+      return -1;
+    }
+    return tens * 10 + ones;
+  }
+}
@@ -33,8 +33,18 @@ public class CommandFactory {
         return new PrintCommand(tokens, controller);
       case "export":
         return new ExportCommand(tokens, controller);
+      case "import":
+        return new ImportCommand(tokens, controller);
       case "show":
         return new ShowCommand(tokens, controller);
+      case "find":
+        return new FindCommand(tokens, controller);
+      case "delete":
+        return new DeleteCommand(tokens, controller);
+      case "save":
+        return new SaveCommand(tokens, controller);
+      case "load":
+        return new LoadCommand(tokens, controller);
       default:
         {
           throw new InvalidCommandException(commandType);
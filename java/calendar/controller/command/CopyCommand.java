@@ -21,6 +21,22 @@ public class CopyCommand implements Command {
     int index = 1;
     if (tokens[index].equalsIgnoreCase("event")) {
       index++;
+      if (tokens[index].equalsIgnoreCase("--id")) {
+        index++;
+        long id = Long.parseLong(tokens[index++]);
+        if (!tokens[index].equalsIgnoreCase("--target")) {
+          throw new MissingParameterException("target calendar");
+        }
+        index++;
+        String targetCal = tokens[index++];
+        if (!tokens[index].equalsIgnoreCase("to")) {
+          throw new MissingParameterException("to");
+        }
+        index++;
+        String targetDateTime = tokens[index++];
+        controller.copyEventById(id, targetCal, targetDateTime);
+        return "Event " + id + " copied to calendar " + targetCal + ".";
+      }
       String eventName = tokens[index++];
       if (!tokens[index].equalsIgnoreCase("on")) {
         throw new MissingParameterException("on");
@@ -30,6 +30,21 @@ public class CreateCommand implements Command {
     }
     index++;
     String timezone = tokens[index++];
+    if (index < tokens.length && tokens[index].equalsIgnoreCase("--storage")) {
+      index++;
+      if (index >= tokens.length) {
+        throw new MissingParameterException("storage mode");
+      }
+      String storageMode = tokens[index++];
+      controller.createCalendar(calName, timezone, storageMode);
+      return "Calendar created: "
+          + calName
+          + " with timezone "
+          + timezone
+          + " and "
+          + storageMode.toLowerCase()
+          + " storage";
+    }
     controller.createCalendar(calName, timezone);
     return "Calendar created: " + calName + " with timezone " + timezone;
   }
@@ -0,0 +1,83 @@
+package calendar.controller.command;
+
+import calendar.controller.CalendarController;
+import calendar.view.exceptions.InvalidCommandException;
+import calendar.view.exceptions.InvalidTokenException;
+import calendar.view.exceptions.MissingParameterException;
+
+/** Concrete implementation of the delete command. */
+public class DeleteCommand implements Command {
+  private final String[] tokens;
+  private final CalendarController controller;
+
+  /** Constructor for the delete command. */
+  public DeleteCommand(String[] tokens, CalendarController controller) {
+    this.tokens = tokens;
+    this.controller = controller;
+  }
+
+  /** Processes a delete event command, addressed either by id or by name and start/end times. */
+  private String processDeleteEvent() throws Exception {
+    if (tokens.length < 3) {
+      throw new MissingParameterException("delete event command parameters");
+    }
+    if (tokens[2].equalsIgnoreCase("--id")) {
+      if (tokens.length < 4) {
+        throw new MissingParameterException("event id");
+      }
+      long id = Long.parseLong(tokens[3]);
+      controller.deleteEventById(id);
+      return "Event " + id + " deleted.";
+    }
+    if (tokens.length < 7) {
+      throw new MissingParameterException("delete event command parameters");
+    }
+    String eventName = tokens[2];
+    if (!tokens[3].equalsIgnoreCase("from")) {
+      throw new InvalidTokenException("from");
+    }
+    String startDateTime = tokens[4];
+    if (!tokens[5].equalsIgnoreCase("to")) {
+      throw new InvalidTokenException("to");
+    }
+    String endDateTime = tokens[6];
+    controller.deleteSingleEvent(eventName, startDateTime, endDateTime);
+    return "Single event deleted.";
+  }
+
+  /** Processes a delete events command for all events with a name, or those from a start time. */
+  private String processDeleteEvents() throws Exception {
+    if (tokens.length < 3) {
+      throw new MissingParameterException("event name");
+    }
+    String eventName = tokens[2];
+    if (tokens.length > 3) {
+      if (!tokens[3].equalsIgnoreCase("from")) {
+        throw new InvalidTokenException("from");
+      }
+      if (tokens.length < 5) {
+        throw new MissingParameterException("start date-time");
+      }
+      String startDateTime = tokens[4];
+      int count = controller.deleteEventsFrom(eventName, startDateTime);
+      return count + " events starting at " + startDateTime + " deleted.";
+    }
+    int count = controller.deleteEvents(eventName);
+    return count + " events with name " + eventName + " deleted.";
+  }
+
+  /** Executes the delete command. */
+  @Override
+  public String execute() throws Exception {
+    if (tokens.length < 2) {
+      throw new MissingParameterException("delete command");
+    }
+    String target = tokens[1].toLowerCase();
+    if (target.equals("event")) {
+      return processDeleteEvent();
+    } else if (target.equals("events")) {
+      return processDeleteEvents();
+    }
+    throw new InvalidCommandException("Invalid delete command target: " + target);
+  }
+}
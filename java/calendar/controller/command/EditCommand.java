@@ -43,6 +43,9 @@ public class EditCommand implements Command {
     }
     String target = tokens[1].toLowerCase();
     if (target.equals("event")) {
+      if (tokens.length > 3 && tokens[3].equalsIgnoreCase("--id")) {
+        return processEditById(tokens, controller);
+      }
       if (tokens.length < 9) {
         throw new MissingParameterException("edit event command parameters");
       }
@@ -83,6 +86,21 @@ public class EditCommand implements Command {
     }
   }
 
+  /** Processes an edit event command addressed by id: edit event property --id id with value. */
+  private static String processEditById(String[] tokens, CalendarController controller)
+      throws Exception {
+    if (tokens.length < 5) {
+      throw new MissingParameterException("event id");
+    }
+    String property = tokens[2];
+    long id = Long.parseLong(tokens[4]);
+    if (tokens.length < 7 || !tokens[5].equalsIgnoreCase("with")) {
+      throw new InvalidTokenException("with");
+    }
+    controller.editEventById(id, property, tokens[6]);
+    return "Event " + id + " edited.";
+  }
+
   /** Executes the edit calendar command. */
   @Override
   public String execute() throws Exception {
@@ -22,6 +22,7 @@ public class ExportCommand implements Command {
     }
     String fileName = tokens[2];
     String path = controller.exportCalendar(fileName);
-    return "Calendar exported to CSV at: " + path;
+    String format = CalendarController.isICalendar(fileName) ? "iCalendar" : "CSV";
+    return "Calendar exported to " + format + " at: " + path;
   }
 }
@@ -0,0 +1,78 @@
+package calendar.controller.command;
+
+import calendar.controller.CalendarController;
+import calendar.view.CalendarView;
+import calendar.view.exceptions.InvalidCommandException;
+import calendar.view.exceptions.InvalidTokenException;
+import calendar.view.exceptions.MissingParameterException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/** Concrete implementation of the find slot command. */
+public class FindCommand implements Command {
+  private final String[] tokens;
+  private final CalendarController controller;
+
+  /** Constructor for the find command. */
+  public FindCommand(String[] tokens, CalendarController controller) {
+    this.tokens = tokens;
+    this.controller = controller;
+  }
+
+  /**
+   * Executes the find command, which has the form
+   * 'find slot --calendars A,B --duration minutes between datetime and datetime [--count n]'.
+   */
+  @Override
+  public String execute() throws Exception {
+    if (tokens.length < 2 || !tokens[1].equalsIgnoreCase("slot")) {
+      throw new InvalidCommandException("find command must be 'find slot ...'");
+    }
+    int index = 2;
+    if (index >= tokens.length || !tokens[index].equalsIgnoreCase("--calendars")) {
+      throw new MissingParameterException("calendars");
+    }
+    index++;
+    if (index >= tokens.length) {
+      throw new MissingParameterException("calendar names");
+    }
+    String calendarList = tokens[index++];
+    if (index >= tokens.length || !tokens[index].equalsIgnoreCase("--duration")) {
+      throw new MissingParameterException("duration");
+    }
+    index++;
+    if (index >= tokens.length) {
+      throw new MissingParameterException("duration in minutes");
+    }
+    int duration = Integer.parseInt(tokens[index++]);
+    if (index >= tokens.length || !tokens[index].equalsIgnoreCase("between")) {
+      throw new InvalidTokenException("between");
+    }
+    index++;
+    if (index >= tokens.length) {
+      throw new MissingParameterException("start datetime");
+    }
+    String startDateTime = tokens[index++];
+    if (index >= tokens.length || !tokens[index].equalsIgnoreCase("and")) {
+      throw new InvalidTokenException("and");
+    }
+    index++;
+    if (index >= tokens.length) {
+      throw new MissingParameterException("end datetime");
+    }
+    String endDateTime = tokens[index++];
+    int count = 1;
+    if (index < tokens.length && tokens[index].equalsIgnoreCase("--count")) {
+      index++;
+      if (index >= tokens.length) {
+        throw new MissingParameterException("slot count");
+      }
+      count = Integer.parseInt(tokens[index++]);
+    }
+    List<String> calendars = Arrays.asList(calendarList.split(","));
+    List<LocalDateTime> slots =
+        controller.findFreeSlots(calendars, duration, startDateTime, endDateTime, count);
+    return CalendarView.formatFreeSlots(duration, slots);
+  }
+}
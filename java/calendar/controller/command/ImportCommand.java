@@ -0,0 +1,28 @@
+package calendar.controller.command;
+
+import calendar.controller.CalendarController;
+import calendar.view.CalendarView;
+import calendar.view.exceptions.InvalidCommandException;
+
+/** Concrete implementation of the import calendar command. */
+public class ImportCommand implements Command {
+  private final String[] tokens;
+  private final CalendarController controller;
+
+  /** Constructor for the import calendar command. */
+  public ImportCommand(String[] tokens, CalendarController controller) {
+    this.tokens = tokens;
+    this.controller = controller;
+  }
+
+  /** Executes the import calendar command. */
+  @Override
+  public String execute() throws Exception {
+    if (tokens.length < 3 || !tokens[1].equalsIgnoreCase("cal")) {
+      throw new InvalidCommandException(
+          "import command must be 'import cal <filename> [--parallel]'");
+    }
+    boolean parallel = tokens.length > 3 && tokens[3].equalsIgnoreCase("--parallel");
+    return CalendarView.formatImportReport(controller.importCalendar(tokens[2], parallel));
+  }
+}
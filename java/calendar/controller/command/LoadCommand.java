@@ -0,0 +1,27 @@
+package calendar.controller.command;
+
+import calendar.controller.CalendarController;
+import calendar.view.exceptions.MissingParameterException;
+
+/** Concrete implementation of the load command, which replaces every calendar with those of a
+ * snapshot. */
+public class LoadCommand implements Command {
+  private final String[] tokens;
+  private final CalendarController controller;
+
+  /** Constructor for the load command. */
+  public LoadCommand(String[] tokens, CalendarController controller) {
+    this.tokens = tokens;
+    this.controller = controller;
+  }
+
+  /** Executes the load command. */
+  @Override
+  public String execute() throws Exception {
+    if (tokens.length < 2) {
+      throw new MissingParameterException("snapshot file name");
+    }
+    int count = controller.loadSnapshot(tokens[1]);
+    return "Loaded " + count + " calendar(s) from snapshot: " + tokens[1];
+  }
+}
@@ -1,15 +1,22 @@
 package calendar.controller.command;
 
 import calendar.controller.CalendarController;
+import calendar.model.EventPage;
 import calendar.model.event.Event;
 import calendar.view.CalendarView;
 import calendar.view.exceptions.InvalidCommandException;
 import calendar.view.exceptions.InvalidTokenException;
 import calendar.view.exceptions.MissingParameterException;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.Arrays;
 import java.util.List;
 
 /** Concrete implementation of the print command. */
 public class PrintCommand implements Command {
+  /** The page size used when a page is resumed without giving one. */
+  private static final int DEFAULT_PAGE_SIZE = 50;
+
   private final String[] tokens;
   private final CalendarController controller;
 
@@ -23,6 +30,9 @@ public class PrintCommand implements Command {
     if (tokens.length < 3) {
       throw new MissingParameterException("print command");
     }
+    if (tokens[1].equalsIgnoreCase("summary")) {
+      return printSummary(tokens[2]);
+    }
     if (!tokens[1].equalsIgnoreCase("events")) {
       throw new InvalidCommandException("print command must be 'print events ...'");
     }
@@ -31,6 +41,10 @@ public class PrintCommand implements Command {
         throw new MissingParameterException("date for print events on");
       }
       String date = tokens[3];
+      List<String> calendars = calendarsOption(4);
+      if (calendars != null) {
+        return CalendarView.formatCalendarEventsOn(date, controller.getEventsOn(date, calendars));
+      }
       List<Event> events = controller.getEventsOn(date);
       return CalendarView.formatEventsOn(date, events);
     } else if (tokens[2].equalsIgnoreCase("from")) {
@@ -39,10 +53,66 @@ public class PrintCommand implements Command {
       }
       String startDateTime = tokens[3];
       String endDateTime = tokens[5];
-      List<Event> events = controller.getEventsBetween(startDateTime, endDateTime);
-      return CalendarView.formatEventsBetween(startDateTime, endDateTime, events);
+      List<String> calendars = null;
+      Integer pageSize = null;
+      String resumeToken = null;
+      for (int index = 6; index < tokens.length; index += 2) {
+        if (index + 1 >= tokens.length) {
+          throw new MissingParameterException("value for " + tokens[index]);
+        }
+        if (tokens[index].equalsIgnoreCase("--calendars")) {
+          calendars = calendarsOption(index);
+        } else if (tokens[index].equalsIgnoreCase("--page-size")) {
+          pageSize = Integer.parseInt(tokens[index + 1]);
+        } else if (tokens[index].equalsIgnoreCase("--resume")) {
+          resumeToken = tokens[index + 1];
+        } else {
+          throw new InvalidTokenException("--page-size");
+        }
+      }
+      if (calendars != null) {
+        if (pageSize != null || resumeToken != null) {
+          throw new InvalidCommandException("Paging is not supported with --calendars.");
+        }
+        return CalendarView.formatCalendarEventsBetween(
+            startDateTime, endDateTime,
+            controller.getEventsBetween(startDateTime, endDateTime, calendars));
+      }
+      if (pageSize != null || resumeToken != null) {
+        EventPage page = controller.getEventsPage(startDateTime, endDateTime,
+            pageSize == null ? DEFAULT_PAGE_SIZE : pageSize, resumeToken);
+        return CalendarView.formatEventsPage(startDateTime, endDateTime, page);
+      }
+      return CalendarView.formatEventsBetween(
+          startDateTime, endDateTime, controller.getEventsBetween(startDateTime, endDateTime));
     } else {
       throw new InvalidCommandException("Invalid print events command.");
     }
   }
-}
\ No newline at end of file
+
+  /** Prints the number of events on each day of a month (yyyy-MM) or a year (yyyy). */
+  private String printSummary(String period) throws Exception {
+    if (period.length() == 4) {
+      Year year = Year.parse(period);
+      return CalendarView.formatEventSummary(
+          period, year.atDay(1), controller.countEventsInYear(year));
+    }
+    YearMonth month = YearMonth.parse(period);
+    return CalendarView.formatEventSummary(
+        period, month.atDay(1), controller.countEventsInMonth(month));
+  }
+
+  /** Parses an optional '--calendars all|A,B' suffix at the given index, or returns null. */
+  private List<String> calendarsOption(int index) throws Exception {
+    if (index >= tokens.length) {
+      return null;
+    }
+    if (!tokens[index].equalsIgnoreCase("--calendars")) {
+      throw new InvalidTokenException("--calendars");
+    }
+    if (index + 1 >= tokens.length) {
+      throw new MissingParameterException("calendar names");
+    }
+    return Arrays.asList(tokens[index + 1].split(","));
+  }
+}
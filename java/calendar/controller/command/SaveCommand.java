@@ -0,0 +1,26 @@
+package calendar.controller.command;
+
+import calendar.controller.CalendarController;
+import calendar.view.exceptions.MissingParameterException;
+
+/** Concrete implementation of the save command, which writes every calendar to a snapshot. */
+public class SaveCommand implements Command {
+  private final String[] tokens;
+  private final CalendarController controller;
+
+  /** Constructor for the save command. */
+  public SaveCommand(String[] tokens, CalendarController controller) {
+    this.tokens = tokens;
+    this.controller = controller;
+  }
+
+  /** Executes the save command. */
+  @Override
+  public String execute() throws Exception {
+    if (tokens.length < 2) {
+      throw new MissingParameterException("snapshot file name");
+    }
+    String path = controller.saveSnapshot(tokens[1]);
+    return "Calendars saved to snapshot at: " + path;
+  }
+}
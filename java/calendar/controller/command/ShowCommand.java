@@ -1,7 +1,10 @@
 package calendar.controller.command;
 
 import calendar.controller.CalendarController;
+import calendar.view.CalendarView;
 import calendar.view.exceptions.InvalidCommandException;
+import calendar.view.exceptions.InvalidTokenException;
+import calendar.view.exceptions.MissingParameterException;
 
 /** Concrete implementation of the show command. */
 public class ShowCommand implements Command {
@@ -17,6 +20,9 @@ public class ShowCommand implements Command {
   /** Executes the show command. */
   @Override
   public String execute() throws Exception {
+    if (tokens.length >= 2 && tokens[1].equalsIgnoreCase("conflicts")) {
+      return showConflicts();
+    }
     if (tokens.length < 4
         || !tokens[1].equalsIgnoreCase("status")
         || !tokens[2].equalsIgnoreCase("on")) {
@@ -25,4 +31,21 @@ public class ShowCommand implements Command {
     String dateTime = tokens[3];
     return controller.getBusyStatus(dateTime);
   }
+
+  /** Handles 'show conflicts [between datetime and datetime]'. */
+  private String showConflicts() throws Exception {
+    if (tokens.length == 2) {
+      return CalendarView.formatConflicts(controller.getConflicts(null, null));
+    }
+    if (!tokens[2].equalsIgnoreCase("between")) {
+      throw new InvalidTokenException("between");
+    }
+    if (tokens.length < 6) {
+      throw new MissingParameterException("date-time range for show conflicts");
+    }
+    if (!tokens[4].equalsIgnoreCase("and")) {
+      throw new InvalidTokenException("and");
+    }
+    return CalendarView.formatConflicts(controller.getConflicts(tokens[3], tokens[5]));
+  }
 }
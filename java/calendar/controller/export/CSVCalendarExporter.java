@@ -2,68 +2,199 @@ package calendar.controller.export;
 
 import calendar.model.Calendar;
 import calendar.model.event.Event;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.Iterator;
 
-/** Exports a calendar to a CSV file formatted for Google Calendar import. */
+/** Exports a calendar to a CSV file formatted for Google Calendar import.
+ *
+ * <p>Rows are streamed straight from the calendar into a large byte buffer that is written to
+ * the file through a channel whenever it fills. Dates and times are laid out from a table of
+ * two-digit pairs instead of through formatters, and every field is quoted with embedded quotes
+ * doubled as RFC 4180 requires. */
 public class CSVCalendarExporter implements CalendarExporter {
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final byte[] HEADER = ("\"Subject\",\"Start Date\",\"Start Time\",\"End Date\","
+      + "\"End Time\",\"All Day Event\",\"Description\",\"Location\",\"Private\""
+      + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] LINE_END =
+      System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TRUE = "\"True\"".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] FALSE = "\"False\"".getBytes(StandardCharsets.US_ASCII);
+  /** Room for everything in a row but its four free-text fields, with some to spare. */
+  private static final int FIXED_ROW_BYTES = 128;
+  /** The two ASCII digits of every number from 0 to 99. */
+  private static final byte[] DIGIT_PAIRS = new byte[200];
+
+  static {
+    for (int i = 0; i < 100; i++) {
+      DIGIT_PAIRS[2 * i] = (byte) ('0' + i / 10);
+      DIGIT_PAIRS[2 * i + 1] = (byte) ('0' + i % 10);
+    }
+  }
 
   /** Exports the given calendar to a CSV file. */
   @Override
   public String export(Calendar calendar, String fileName) throws IOException {
-    String absPath = Paths.get(fileName).toAbsolutePath().toString();
-    DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
-    DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-    try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-      // Write header with all fields quoted.
-      writer.write(
-          "\"Subject\",\"Start Date\",\"Start Time\",\"End Date\","
-              + "\"End Time\",\"All Day Event\",\"Description\",\"Location\",\"Private\"");
-      writer.newLine();
-      // Retrieve all events using a wide range.
-      List<Event> events =
-          calendar.getEventsBetween(
+    Path path = Paths.get(fileName);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      new RowWriter(channel).write(calendar);
+    }
+    return path.toAbsolutePath().toString();
+  }
+
+  /** Lays rows out in a byte array backing a buffer and drains it to the channel. */
+  private static final class RowWriter {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] out = buffer.array();
+    private int pos;
+
+    private RowWriter(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    private void write(Calendar calendar) throws IOException {
+      put(HEADER);
+      // Read all events lazily over a wide range, so no full copy of the calendar is built.
+      Iterator<Event> events =
+          calendar.iterateEventsBetween(
               LocalDateTime.of(1, 1, 1, 0, 0), LocalDateTime.of(9999, 12, 31, 23, 59));
-      for (Event event : events) {
-        String subject = event.getName();
-        String startDate = dateFormatter.format(event.getStart());
-        String endDate = dateFormatter.format(event.getEnd());
-        String startTime = timeFormatter.format(event.getStart());
-        String endTime = timeFormatter.format(event.getEnd());
-        boolean isAllDay =
-            (event.getStart().getHour() == 0
-                && event.getStart().getMinute() == 0
-                && event.getEnd().getHour() == 23
-                && event.getEnd().getMinute() == 59);
-        String allDay = isAllDay ? "True" : "False";
-        if (isAllDay) {
-          startTime = "";
-          endTime = "";
+      while (events.hasNext()) {
+        writeRow(events.next());
+      }
+      flush();
+    }
+
+    private void writeRow(Event event) throws IOException {
+      LocalDateTime start = event.getStart();
+      LocalDateTime end = event.getEnd();
+      boolean isAllDay = start.getHour() == 0 && start.getMinute() == 0
+          && end.getHour() == 23 && end.getMinute() == 59;
+      quoted(event.getName());
+      ensure(FIXED_ROW_BYTES);
+      out[pos++] = ',';
+      date(start);
+      out[pos++] = ',';
+      time(start, isAllDay);
+      out[pos++] = ',';
+      date(end);
+      out[pos++] = ',';
+      time(end, isAllDay);
+      out[pos++] = ',';
+      put(isAllDay ? TRUE : FALSE);
+      out[pos++] = ',';
+      quoted(event.getDescription());
+      ensure(1);
+      out[pos++] = ',';
+      quoted(event.getLocation());
+      ensure(FIXED_ROW_BYTES);
+      out[pos++] = ',';
+      put(event.isPublic() ? FALSE : TRUE);
+      put(LINE_END);
+    }
+
+    /** Writes a quoted MM/dd/yyyy date. */
+    private void date(LocalDateTime dateTime) {
+      int year = dateTime.getYear();
+      out[pos++] = '"';
+      pair(dateTime.getMonthValue());
+      out[pos++] = '/';
+      pair(dateTime.getDayOfMonth());
+      out[pos++] = '/';
+      pair(year / 100);
+      pair(year % 100);
+      out[pos++] = '"';
+    }
+
+    /** Writes a quoted HH:mm time, or an empty quoted field for an all-day event. */
+    private void time(LocalDateTime dateTime, boolean isAllDay) {
+      out[pos++] = '"';
+      if (!isAllDay) {
+        pair(dateTime.getHour());
+        out[pos++] = ':';
+        pair(dateTime.getMinute());
+      }
+      out[pos++] = '"';
+    }
+
+    private void pair(int value) {
+      out[pos++] = DIGIT_PAIRS[2 * value];
+      out[pos++] = DIGIT_PAIRS[2 * value + 1];
+    }
+
+    /** Writes a field in quotes as UTF-8, doubling the quotes inside it. A null field is written
+     * as an empty one. */
+    private void quoted(String value) throws IOException {
+      int length = value == null ? 0 : value.length();
+      // Each char takes at most three bytes, a doubled quote or half a surrogate pair fewer.
+      int worst = 3 * length + 2;
+      if (worst > BUFFER_SIZE) {
+        put(("\"" + value.replace("\"", "\"\"") + "\"").getBytes(StandardCharsets.UTF_8));
+        return;
+      }
+      ensure(worst);
+      out[pos++] = '"';
+      for (int i = 0; i < length; i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          if (c == '"') {
+            out[pos++] = '"';
+          }
+          out[pos++] = (byte) c;
+        } else if (c < 0x800) {
+          out[pos++] = (byte) (0xC0 | c >> 6);
+          out[pos++] = (byte) (0x80 | c & 0x3F);
+        } else if (Character.isHighSurrogate(c) && i + 1 < length
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int code = Character.toCodePoint(c, value.charAt(++i));
+          out[pos++] = (byte) (0xF0 | code >> 18);
+          out[pos++] = (byte) (0x80 | code >> 12 & 0x3F);
+          out[pos++] = (byte) (0x80 | code >> 6 & 0x3F);
+          out[pos++] = (byte) (0x80 | code & 0x3F);
+        } else if (Character.isSurrogate(c)) {
+          out[pos++] = '?';
+        } else {
+          out[pos++] = (byte) (0xE0 | c >> 12);
+          out[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+          out[pos++] = (byte) (0x80 | c & 0x3F);
         }
-        String isPrivate = (!event.isPublic()) ? "True" : "False";
-        String description = event.getDescription();
-        String location = event.getLocation();
-        // Wrap each field in quotes.
-        writer.write(
-            String.format(
-                "\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\"",
-                subject,
-                startDate,
-                startTime,
-                endDate,
-                endTime,
-                allDay,
-                description,
-                location,
-                isPrivate));
-        writer.newLine();
       }
+      out[pos++] = '"';
+    }
+
+    /** Writes bytes that may be longer than the buffer. */
+    private void put(byte[] bytes) throws IOException {
+      int offset = 0;
+      while (offset < bytes.length) {
+        ensure(1);
+        int chunk = Math.min(bytes.length - offset, BUFFER_SIZE - pos);
+        System.arraycopy(bytes, offset, out, pos, chunk);
+        pos += chunk;
+        offset += chunk;
+      }
+    }
+
+    /** Drains the buffer if fewer than the given number of bytes are free in it. */
+    private void ensure(int bytes) throws IOException {
+      if (BUFFER_SIZE - pos < bytes) {
+        flush();
+      }
+    }
+
+    private void flush() throws IOException {
+      buffer.clear().limit(pos);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      pos = 0;
     }
-    return absPath;
   }
 }
@@ -0,0 +1,238 @@
+package calendar.controller.export;
+
+import calendar.model.Calendar;
+import calendar.model.event.Event;
+import calendar.model.event.RecurringEvent;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/** Exports a calendar to an iCalendar (RFC 5545) file.
+ *
+ * <p>Each series is written as the rule it is kept as: one VEVENT whose RRULE repeats weekly on
+ * its weekdays until its last date, with an EXDATE for every date excluded from it, so a series
+ * takes a few lines however many occurrences it has. Series times are wall-clock times with a
+ * TZID naming the calendar's zone, and the rule's UNTIL is the UTC start of its last occurrence;
+ * they are floating times only for a calendar without a zone. Single events are written with
+ * their exact UTC bounds. */
+public class ICalCalendarExporter implements CalendarExporter {
+  private static final String LINE_END = "\r\n";
+  /** The longest a content line may be, in UTF-8 octets, before it is folded. */
+  private static final int MAX_LINE_OCTETS = 75;
+  private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+
+  /** Exports the given calendar to an iCalendar file. */
+  @Override
+  public String export(Calendar calendar, String fileName) throws IOException {
+    Path path = Paths.get(fileName);
+    try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      new EventWriter(out, calendar).write();
+    }
+    return path.toAbsolutePath().toString();
+  }
+
+  /** Writes the components of one calendar as folded content lines. */
+  private static final class EventWriter {
+    private final Writer out;
+    private final Calendar calendar;
+    private final StringBuilder line = new StringBuilder();
+    private final String stamp;
+
+    private EventWriter(Writer out, Calendar calendar) {
+      this.out = out;
+      this.calendar = calendar;
+      StringBuilder now = new StringBuilder();
+      utc(now, Instant.now().getEpochSecond() / 60);
+      this.stamp = now.toString();
+    }
+
+    private void write() throws IOException {
+      line("BEGIN:VCALENDAR");
+      line("VERSION:2.0");
+      line("PRODID:-//Calendar App//Calendar Export//EN");
+      line("CALSCALE:GREGORIAN");
+      text(line.append("X-WR-CALNAME:"), calendar.getName());
+      flushLine();
+      if (calendar.getTimezone() != null) {
+        line("X-WR-TIMEZONE:" + calendar.getTimezone().getId());
+      }
+      Iterator<Event> singles = calendar.singleEvents();
+      while (singles.hasNext()) {
+        writeSingle(singles.next());
+      }
+      for (RecurringEvent recurring : calendar.getSeries()) {
+        writeSeries(recurring);
+      }
+      line("END:VCALENDAR");
+    }
+
+    private void writeSingle(Event event) throws IOException {
+      begin(event);
+      line.append("DTSTART:");
+      utc(line, calendar.startOf(event));
+      flushLine();
+      line.append("DTEND:");
+      utc(line, calendar.endOf(event));
+      flushLine();
+      line("END:VEVENT");
+    }
+
+    private void writeSeries(RecurringEvent recurring) throws IOException {
+      LocalDate first = recurring.getFirstDate();
+      begin(recurring);
+      zoned("DTSTART");
+      local(line, recurring.getFirstStart());
+      flushLine();
+      zoned("DTEND");
+      local(line, LocalDateTime.of(first, recurring.getEnd().toLocalTime()));
+      flushLine();
+      line.append("RRULE:FREQ=WEEKLY;UNTIL=");
+      LocalDateTime last =
+          LocalDateTime.of(recurring.getLastDate(), recurring.getStart().toLocalTime());
+      if (calendar.getTimezone() == null) {
+        local(line, last);
+      } else {
+        utc(line, calendar.toEpochMinutes(last));
+      }
+      line.append(";BYDAY=");
+      String separator = "";
+      for (DayOfWeek day : recurring.getWeekdays()) {
+        line.append(separator).append(DAY_CODES[day.getValue() - 1]);
+        separator = ",";
+      }
+      flushLine();
+      TreeSet<LocalDate> excluded = new TreeSet<>(recurring.getExcludedDates());
+      if (!excluded.isEmpty()) {
+        zoned("EXDATE");
+        separator = "";
+        for (LocalDate date : excluded) {
+          line.append(separator);
+          local(line, LocalDateTime.of(date, recurring.getStart().toLocalTime()));
+          separator = ",";
+        }
+        flushLine();
+      }
+      line("END:VEVENT");
+    }
+
+    /** Starts a date-time property with a TZID naming the calendar's zone, if it has one. */
+    private void zoned(String name) {
+      line.append(name);
+      if (calendar.getTimezone() != null) {
+        line.append(";TZID=").append(calendar.getTimezone().getId());
+      }
+      line.append(':');
+    }
+
+    /** Opens a VEVENT and writes the properties every event has. */
+    private void begin(Event event) throws IOException {
+      line("BEGIN:VEVENT");
+      line("UID:" + event.getId() + "@calendar");
+      line("DTSTAMP:" + stamp);
+      text(line.append("SUMMARY:"), event.getName());
+      flushLine();
+      optional("DESCRIPTION:", event.getDescription());
+      optional("LOCATION:", event.getLocation());
+      if (!event.isPublic()) {
+        line("CLASS:PRIVATE");
+      }
+    }
+
+    /** Writes a text property unless its value is null or empty. */
+    private void optional(String name, String value) throws IOException {
+      if (value != null && !value.isEmpty()) {
+        text(line.append(name), value);
+        flushLine();
+      }
+    }
+
+    private void flushLine() throws IOException {
+      line(line.toString());
+      line.setLength(0);
+    }
+
+    /** Writes a content line, folding it with CRLF and a space wherever it would otherwise run
+     * past 75 octets. A surrogate pair is never split. */
+    private void line(String content) throws IOException {
+      int octets = 0;
+      for (int i = 0; i < content.length(); i++) {
+        char c = content.charAt(i);
+        int size = c < 0x80 ? 1
+            : c < 0x800 ? 2
+            : Character.isHighSurrogate(c) ? 4
+            : Character.isLowSurrogate(c) ? 0
+            : 3;
+        if (octets + size > MAX_LINE_OCTETS) {
+          out.write(LINE_END);
+          out.write(' ');
+          octets = 1;
+        }
+        out.write(c);
+        octets += size;
+      }
+      out.write(LINE_END);
+    }
+
+    /** Appends a value escaped as iCalendar text. Line breaks become "\n". */
+    private static void text(StringBuilder to, String value) {
+      if (value == null) {
+        return;
+      }
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        switch (c) {
+          case '\\':
+          case ';':
+          case ',':
+            to.append('\\').append(c);
+            break;
+          case '\n':
+            to.append("\\n");
+            break;
+          case '\r':
+            if (i + 1 == value.length() || value.charAt(i + 1) != '\n') {
+              to.append("\\n");
+            }
+            break;
+          default:
+            to.append(c);
+        }
+      }
+    }
+
+    /** Appends an epoch minute as a UTC date-time, yyyyMMdd'T'HHmmss'Z'. */
+    private static void utc(StringBuilder to, long epochMinutes) {
+      local(to, LocalDateTime.ofEpochSecond(epochMinutes * 60, 0, ZoneOffset.UTC));
+      to.append('Z');
+    }
+
+    /** Appends a floating date-time, yyyyMMdd'T'HHmmss. */
+    private static void local(StringBuilder to, LocalDateTime dateTime) {
+      pad(to, dateTime.getYear(), 4);
+      pad(to, dateTime.getMonthValue(), 2);
+      pad(to, dateTime.getDayOfMonth(), 2);
+      to.append('T');
+      pad(to, dateTime.getHour(), 2);
+      pad(to, dateTime.getMinute(), 2);
+      to.append("00");
+    }
+
+    private static void pad(StringBuilder to, int value, int digits) {
+      String text = Integer.toString(value);
+      for (int i = text.length(); i < digits; i++) {
+        to.append('0');
+      }
+      to.append(text);
+    }
+  }
+}
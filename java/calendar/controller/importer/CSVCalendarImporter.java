@@ -0,0 +1,73 @@
+package calendar.controller.importer;
+
+import calendar.model.Calendar;
+import calendar.model.index.ZoneClock;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/** Imports the events of a CSV file in the format the CSV exporter writes.
+ *
+ * <p>The file is streamed through a fixed buffer and parsed as RFC 4180, so quoted fields may
+ * hold commas, quotes and line breaks. Valid rows are added to the calendar in batches, without
+ * conflict checks, and invalid ones are counted and skipped; the report lists the first of them
+ * by line number. */
+public class CSVCalendarImporter implements CalendarImporter {
+  static final int BUFFER_SIZE = 1 << 20;
+  private static final int BATCH_SIZE = 1 << 16;
+  /** How many rejected rows the report describes. */
+  static final int MAX_REPORTED = 10;
+
+  /** Imports the events of the given CSV file into the calendar. */
+  @Override
+  public ImportReport importInto(Calendar calendar, String fileName) throws Exception {
+    long begin = System.nanoTime();
+    Path path = Paths.get(fileName);
+    int imported = 0;
+    EventBatch batch = new EventBatch(BATCH_SIZE);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      CsvReader reader = new CsvReader(channel, BUFFER_SIZE);
+      EventRowMapper mapper = readHeader(reader, fileName);
+      ZoneClock clock = new ZoneClock(calendar.getTimezone());
+      while (reader.next()) {
+        mapRecord(reader, mapper, clock, batch, 0);
+        if (batch.size() == BATCH_SIZE) {
+          imported += batch.flushInto(calendar);
+        }
+      }
+      imported += batch.flushInto(calendar);
+    }
+    return new ImportReport(path.toAbsolutePath().toString(), imported, batch.getRejected(),
+        batch.getRejections(), System.nanoTime() - begin);
+  }
+
+  /** Reads the header record and returns a mapper for its columns. */
+  static EventRowMapper readHeader(CsvReader reader, String fileName) throws Exception {
+    if (!reader.next()) {
+      throw new Exception("CSV file " + fileName + " is empty.");
+    }
+    try {
+      return new EventRowMapper(reader.texts());
+    } catch (IllegalArgumentException e) {
+      throw new Exception(e.getMessage());
+    }
+  }
+
+  /** Maps the current record into the batch, or counts it as rejected there under its line plus
+   * the given offset. Blank lines are skipped. */
+  static void mapRecord(CsvReader reader, EventRowMapper mapper, ZoneClock clock,
+      EventBatch batch, int lineOffset) {
+    if (reader.isBlank()) {
+      return;
+    }
+    try {
+      if (reader.isUnterminated()) {
+        throw new IllegalArgumentException("unterminated quoted field");
+      }
+      mapper.mapInto(reader, clock, batch);
+    } catch (IllegalArgumentException e) {
+      batch.reject(reader.getLine() + lineOffset, e.getMessage());
+    }
+  }
+}
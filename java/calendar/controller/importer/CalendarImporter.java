@@ -0,0 +1,7 @@
+package calendar.controller.importer;
+
+/** Interface for importing events from a file into a calendar. */
+public interface CalendarImporter {
+  /** Imports the events of the specified file into the given calendar. */
+  ImportReport importInto(calendar.model.Calendar calendar, String fileName) throws Exception;
+}
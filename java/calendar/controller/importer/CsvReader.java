@@ -0,0 +1,237 @@
+package calendar.controller.importer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Reads the records of an RFC 4180 CSV stream or region of a mapped file, one at a time,
+ * through a fixed byte buffer.
+ * Fields may be quoted, and quoted fields may hold commas, line breaks and doubled quotes.
+ * Records end at LF, CRLF or a lone CR.
+ *
+ * <p>A record is kept as the unquoted bytes of its fields, one after another, and the offsets
+ * where each field starts and ends, so callers can read numbers and dates straight from the
+ * bytes and make strings only of the fields they need as text. The bytes are taken as UTF-8,
+ * which is safe to scan byte by byte because every byte of a multi-byte character is above the
+ * ASCII range. */
+final class CsvReader {
+  private final ReadableByteChannel channel;
+  private final ByteBuffer source;
+  private final ByteBuffer buffer;
+  private final byte[] bytes;
+  private int pos;
+  private int limit;
+  private long bufferOffset;
+  private byte[] data = new byte[1024];
+  private int dataLength;
+  private int[] bounds = new int[32];
+  private int fieldCount;
+  private int line = 1;
+  private int recordLine;
+  private boolean unterminated;
+  private boolean strayQuote;
+
+  /** Creates a reader over the channel using a buffer of the given size. */
+  CsvReader(ReadableByteChannel channel, int bufferSize) {
+    this.channel = channel;
+    this.source = null;
+    this.buffer = ByteBuffer.allocate(bufferSize);
+    this.bytes = buffer.array();
+  }
+
+  /** Creates a reader over the remaining bytes of the source, such as a mapped region of a file,
+   * using a buffer of the given size. */
+  CsvReader(ByteBuffer source, int bufferSize) {
+    this.channel = null;
+    this.source = source;
+    this.buffer = ByteBuffer.allocate(bufferSize);
+    this.bytes = buffer.array();
+  }
+
+  /** Reads the next record and returns true, or returns false at the end of the input. */
+  boolean next() throws IOException {
+    fieldCount = 0;
+    dataLength = 0;
+    unterminated = false;
+    recordLine = line;
+    if (pos == limit && !fill()) {
+      return false;
+    }
+    while (true) {
+      int start = dataLength;
+      int c = readField();
+      if (fieldCount * 2 == bounds.length) {
+        bounds = Arrays.copyOf(bounds, bounds.length * 2);
+      }
+      bounds[fieldCount * 2] = start;
+      bounds[fieldCount * 2 + 1] = dataLength;
+      fieldCount++;
+      if (c == ',') {
+        continue;
+      }
+      if (c == '\r') {
+        line++;
+        if ((pos < limit || fill()) && bytes[pos] == '\n') {
+          pos++;
+        }
+      } else if (c == '\n') {
+        line++;
+      }
+      return true;
+    }
+  }
+
+  /** Returns the number of fields in the current record. */
+  int size() {
+    return fieldCount;
+  }
+
+  /** Returns the bytes the fields of the current record are kept in. */
+  byte[] data() {
+    return data;
+  }
+
+  /** Returns the offset in {@link #data()} where the given field starts. */
+  int start(int field) {
+    return bounds[field * 2];
+  }
+
+  /** Returns the offset in {@link #data()} just past the end of the given field. */
+  int end(int field) {
+    return bounds[field * 2 + 1];
+  }
+
+  /** Returns the given field as a string. */
+  String text(int field) {
+    return new String(data, start(field), end(field) - start(field), StandardCharsets.UTF_8);
+  }
+
+  /** Returns every field of the current record as a string. */
+  List<String> texts() {
+    List<String> texts = new ArrayList<>(fieldCount);
+    for (int i = 0; i < fieldCount; i++) {
+      texts.add(text(i));
+    }
+    return texts;
+  }
+
+  /** Returns true if the current record is a blank line. */
+  boolean isBlank() {
+    return fieldCount == 1 && dataLength == 0;
+  }
+
+  /** Returns the line the current record starts on, counting from 1. */
+  int getLine() {
+    return recordLine;
+  }
+
+  /** Returns true if the current record ended inside a quoted field. */
+  boolean isUnterminated() {
+    return unterminated;
+  }
+
+  /** Returns true if a quote has been read anywhere but at the start of a field or inside a
+   * quoted one, where it is kept as text. Only then can the quotes of the input not be paired
+   * up by counting them. */
+  boolean hasStrayQuote() {
+    return strayQuote;
+  }
+
+  /** Returns how many lines the records read so far span. */
+  int linesRead() {
+    return line - 1;
+  }
+
+  /** Returns how many bytes of the input the records read so far take up. */
+  long consumed() {
+    return bufferOffset + pos;
+  }
+
+  /** Appends the unquoted bytes of the next field to the record and returns the byte that ended
+   * it, a comma or line break, or -1 at the end of the input. */
+  private int readField() throws IOException {
+    if ((pos < limit || fill()) && bytes[pos] == '"') {
+      pos++;
+      while (true) {
+        if (pos == limit && !fill()) {
+          unterminated = true;
+          return -1;
+        }
+        int run = pos;
+        while (pos < limit && bytes[pos] != '"') {
+          if (bytes[pos] == '\n') {
+            line++;
+          }
+          pos++;
+        }
+        append(run, pos);
+        if (pos == limit) {
+          continue;
+        }
+        pos++;
+        if (pos == limit && !fill()) {
+          return -1;
+        }
+        if (bytes[pos] != '"') {
+          break;
+        }
+        append(pos, ++pos);
+      }
+    }
+    // Text after a closing quote is not valid RFC 4180 but is kept rather than lost.
+    while (true) {
+      int run = pos;
+      while (pos < limit) {
+        byte b = bytes[pos];
+        if (b == ',' || b == '\n' || b == '\r') {
+          break;
+        }
+        if (b == '"') {
+          strayQuote = true;
+        }
+        pos++;
+      }
+      append(run, pos);
+      if (pos < limit) {
+        return bytes[pos++];
+      }
+      if (!fill()) {
+        return -1;
+      }
+    }
+  }
+
+  /** Copies a run of the read buffer to the record. */
+  private void append(int from, int to) {
+    int length = to - from;
+    if (dataLength + length > data.length) {
+      data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + length));
+    }
+    System.arraycopy(bytes, from, data, dataLength, length);
+    dataLength += length;
+  }
+
+  /** Refills the read buffer once it has been consumed, returning false at the end of input. */
+  private boolean fill() throws IOException {
+    bufferOffset += limit;
+    int read;
+    if (source != null) {
+      read = source.hasRemaining() ? Math.min(source.remaining(), bytes.length) : -1;
+      if (read > 0) {
+        source.get(bytes, 0, read);
+      }
+    } else {
+      buffer.clear();
+      do {
+        read = channel.read(buffer);
+      } while (read == 0);
+    }
+    pos = 0;
+    limit = Math.max(read, 0);
+    return read > 0;
+  }
+}
@@ -0,0 +1,93 @@
+package calendar.controller.importer;
+
+import calendar.model.Calendar;
+import calendar.model.event.EventDetails;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** The single events parsed from a run of CSV rows, kept as parallel arrays of details records
+ * and UTC epoch-minute bounds ready for {@link Calendar#addSingleEvents}, along with the rows
+ * that were rejected. Rejected rows are numbered by their line within the run. */
+final class EventBatch {
+  private EventDetails[] details;
+  private long[] starts;
+  private long[] ends;
+  private int count;
+  private int rejected;
+  private final List<Integer> rejectedLines = new ArrayList<>();
+  private final List<String> rejectedReasons = new ArrayList<>();
+
+  /** Creates an empty batch with room for the given number of events. */
+  EventBatch(int capacity) {
+    capacity = Math.max(capacity, 16);
+    details = new EventDetails[capacity];
+    starts = new long[capacity];
+    ends = new long[capacity];
+  }
+
+  /** Adds an event. */
+  void add(EventDetails eventDetails, long start, long end) {
+    if (count == details.length) {
+      int capacity = count * 2;
+      details = Arrays.copyOf(details, capacity);
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+    }
+    details[count] = eventDetails;
+    starts[count] = start;
+    ends[count] = end;
+    count++;
+  }
+
+  /** Counts a rejected row, keeping the reason for the first few. */
+  void reject(int line, String reason) {
+    if (rejected++ < CSVCalendarImporter.MAX_REPORTED) {
+      rejectedLines.add(line);
+      rejectedReasons.add(reason);
+    }
+  }
+
+  /** Appends the events and rejections of another batch, whose lines are renumbered by the given
+   * offset. */
+  void append(EventBatch other, int lineOffset) {
+    for (int i = 0; i < other.count; i++) {
+      add(other.details[i], other.starts[i], other.ends[i]);
+    }
+    for (int i = 0; i < other.rejectedLines.size(); i++) {
+      reject(other.rejectedLines.get(i) + lineOffset, other.rejectedReasons.get(i));
+    }
+    rejected += other.rejected - other.rejectedLines.size();
+  }
+
+  /** Adds the events to the calendar in one bulk step and empties the batch, keeping the
+   * rejections. Returns how many events were added. */
+  int flushInto(Calendar calendar) {
+    int added = count;
+    if (count > 0) {
+      calendar.addSingleEvents(details, starts, ends, count);
+      Arrays.fill(details, 0, count, null);
+      count = 0;
+    }
+    return added;
+  }
+
+  /** Returns the number of events in the batch. */
+  int size() {
+    return count;
+  }
+
+  /** Returns the number of rows rejected. */
+  int getRejected() {
+    return rejected;
+  }
+
+  /** Returns the first few rejections as "line N: reason". */
+  List<String> getRejections() {
+    List<String> rejections = new ArrayList<>(rejectedLines.size());
+    for (int i = 0; i < rejectedLines.size(); i++) {
+      rejections.add("line " + rejectedLines.get(i) + ": " + rejectedReasons.get(i));
+    }
+    return rejections;
+  }
+}
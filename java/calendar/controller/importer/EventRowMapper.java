@@ -0,0 +1,258 @@
+package calendar.controller.importer;
+
+import calendar.controller.DateTimeParser;
+import calendar.model.event.EventDetails;
+import calendar.model.index.ZoneClock;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Turns CSV records into single events in an {@link EventBatch}, finding the fields by the
+ * column names of the header the exporter writes, in any order. Dates are M/d/yyyy or
+ * yyyy-MM-dd and times H:mm, read straight from the record bytes. A row that is marked all day,
+ * or has neither time, runs from midnight of its start date to 23:59 of its end date, which
+ * defaults to the start date. Rows that cannot become an event are rejected with an
+ * IllegalArgumentException naming the problem. */
+final class EventRowMapper {
+  private static final String[] COLUMNS = {"Subject", "Start Date", "Start Time", "End Date",
+      "End Time", "All Day Event", "Description", "Location", "Private"};
+  private static final int SUBJECT = 0;
+  private static final int START_DATE = 1;
+  private static final int START_TIME = 2;
+  private static final int END_DATE = 3;
+  private static final int END_TIME = 4;
+  private static final int ALL_DAY = 5;
+  private static final int DESCRIPTION = 6;
+  private static final int LOCATION = 7;
+  private static final int PRIVATE = 8;
+  /** How many distinct strings are shared between rows before new ones are kept as read. */
+  private static final int MAX_SHARED_STRINGS = 1 << 16;
+  private static final int SHARED_SLOTS = MAX_SHARED_STRINGS * 2;
+  private static final long MINUTES_PER_DAY = 24 * 60;
+
+  private final int[] columns = new int[COLUMNS.length];
+  private final byte[][] sharedBytes = new byte[SHARED_SLOTS][];
+  private final String[] sharedStrings = new String[SHARED_SLOTS];
+  private int sharedCount;
+  private final Map<String, EventDetails> detailsByName = new HashMap<>();
+
+  /** Creates a mapper for the columns of the given header record. */
+  EventRowMapper(List<String> header) {
+    Arrays.fill(columns, -1);
+    for (int i = 0; i < header.size(); i++) {
+      String name = header.get(i).trim();
+      if (i == 0 && name.startsWith("\uFEFF")) {
+        name = name.substring(1);
+      }
+      for (int column = 0; column < COLUMNS.length; column++) {
+        if (columns[column] < 0 && COLUMNS[column].equalsIgnoreCase(name)) {
+          columns[column] = i;
+        }
+      }
+    }
+    for (int required : new int[] {SUBJECT, START_DATE}) {
+      if (columns[required] < 0) {
+        throw new IllegalArgumentException("Missing CSV column: " + COLUMNS[required]);
+      }
+    }
+  }
+
+  /** Creates a mapper for the same columns as another, with tables of its own, so that each of
+   * several threads can map records with its own. */
+  EventRowMapper(EventRowMapper other) {
+    System.arraycopy(other.columns, 0, columns, 0, columns.length);
+  }
+
+  /** Adds the event the current record of the reader describes to the batch, its wall-clock
+   * bounds converted to epoch minutes by the clock. Rows share their repeated strings, and a row
+   * with the same name, description, location and visibility as the last row of its name shares
+   * that row's details record, so a large import keeps one copy of each. */
+  void mapInto(CsvReader record, ZoneClock clock, EventBatch batch) {
+    String subject = shared(record, SUBJECT);
+    if (subject.isEmpty()) {
+      throw new IllegalArgumentException("missing subject");
+    }
+    LocalDate startDate = date(record, START_DATE, "start date");
+    LocalDate endDate = isEmpty(record, END_DATE)
+        ? startDate
+        : date(record, END_DATE, "end date");
+    boolean allDay = isTrue(record, ALL_DAY)
+        || (isEmpty(record, START_TIME) && isEmpty(record, END_TIME));
+    // Wall-clock minute keys, as TimeKeys lays them out.
+    long start = startDate.toEpochDay() * MINUTES_PER_DAY;
+    long end = endDate.toEpochDay() * MINUTES_PER_DAY;
+    if (allDay) {
+      end += MINUTES_PER_DAY - 1;
+    } else {
+      start += time(record, START_TIME, "start time");
+      end += time(record, END_TIME, "end time");
+    }
+    if (end < start) {
+      throw new IllegalArgumentException("end is before start");
+    }
+    String description = shared(record, DESCRIPTION);
+    String location = shared(record, LOCATION);
+    boolean isPublic = !isTrue(record, PRIVATE);
+    EventDetails details = detailsByName.get(subject);
+    if (details == null || !details.getDescription().equals(description)
+        || !details.getLocation().equals(location) || details.isPublic() != isPublic) {
+      details = new EventDetails(subject, description, location, isPublic);
+      if (detailsByName.size() < MAX_SHARED_STRINGS || detailsByName.containsKey(subject)) {
+        detailsByName.put(subject, details);
+      }
+    }
+    batch.add(details, clock.toEpochMinutes(start), clock.toEpochMinutes(end));
+  }
+
+  /** Returns the field of a column as text, or an empty string if the row does not have it. */
+  private String text(CsvReader record, int column) {
+    int field = columns[column];
+    return field >= 0 && field < record.size() ? record.text(field) : "";
+  }
+
+  private boolean isEmpty(CsvReader record, int column) {
+    int field = columns[column];
+    return field < 0 || field >= record.size() || record.start(field) == record.end(field);
+  }
+
+  /** Returns true if the field of a column is "True" in any case. */
+  private boolean isTrue(CsvReader record, int column) {
+    int field = columns[column];
+    if (field < 0 || field >= record.size() || record.end(field) - record.start(field) != 4) {
+      return false;
+    }
+    byte[] data = record.data();
+    int at = record.start(field);
+    return (data[at] | 0x20) == 't' && (data[at + 1] | 0x20) == 'r'
+        && (data[at + 2] | 0x20) == 'u' && (data[at + 3] | 0x20) == 'e';
+  }
+
+  /** Returns the field of a column as text, reusing the string made for an earlier row with the
+   * same bytes. Strings are looked up in an open-addressed table by a hash of their bytes, so a
+   * repeated value costs no allocation. */
+  private String shared(CsvReader record, int column) {
+    int field = columns[column];
+    if (field < 0 || field >= record.size()) {
+      return "";
+    }
+    byte[] data = record.data();
+    int from = record.start(field);
+    int to = record.end(field);
+    int hash = 0;
+    for (int i = from; i < to; i++) {
+      hash = 31 * hash + data[i];
+    }
+    int slot = (hash ^ hash >>> 16) & (SHARED_SLOTS - 1);
+    while (sharedBytes[slot] != null) {
+      if (Arrays.equals(sharedBytes[slot], 0, sharedBytes[slot].length, data, from, to)) {
+        return sharedStrings[slot];
+      }
+      slot = (slot + 1) & (SHARED_SLOTS - 1);
+    }
+    String value = new String(data, from, to - from, StandardCharsets.UTF_8);
+    if (sharedCount < MAX_SHARED_STRINGS) {
+      sharedBytes[slot] = Arrays.copyOfRange(data, from, to);
+      sharedStrings[slot] = value;
+      sharedCount++;
+    }
+    return value;
+  }
+
+  /** Parses an M/d/yyyy or yyyy-MM-dd date. */
+  private LocalDate date(CsvReader record, int column, String what) {
+    if (isEmpty(record, column)) {
+      throw new IllegalArgumentException("missing " + what);
+    }
+    int field = columns[column];
+    byte[] data = record.data();
+    int from = record.start(field);
+    int to = record.end(field);
+    while (from < to && data[from] == ' ') {
+      from++;
+    }
+    while (to > from && data[to - 1] == ' ') {
+      to--;
+    }
+    try {
+      int firstSlash = indexOf(data, from, to, '/');
+      if (firstSlash >= 0) {
+        int secondSlash = indexOf(data, firstSlash + 1, to, '/');
+        if (secondSlash >= 0 && to - secondSlash == 5) {
+          int month = number(data, from, firstSlash);
+          int day = number(data, firstSlash + 1, secondSlash);
+          int year = number(data, secondSlash + 1, to);
+          if (month >= 0 && day >= 0 && year >= 0) {
+            return LocalDate.of(year, month, day);
+          }
+        }
+      } else if (to - from == 10 && data[from + 4] == '-' && data[from + 7] == '-') {
+        int year = number(data, from, from + 4);
+        int month = number(data, from + 5, from + 7);
+        int day = number(data, from + 8, to);
+        if (year >= 0 && month >= 0 && day >= 0) {
+          return LocalDate.of(year, month, day);
+        }
+      } else {
+        return DateTimeParser.parseDate(text(record, column).trim());
+      }
+    } catch (DateTimeException e) {
+      // Reported below with the field it came from.
+    }
+    throw new IllegalArgumentException("invalid " + what + " '" + text(record, column) + "'");
+  }
+
+  /** Parses an H:mm time into minutes since midnight. */
+  private int time(CsvReader record, int column, String what) {
+    if (isEmpty(record, column)) {
+      throw new IllegalArgumentException("missing " + what);
+    }
+    int field = columns[column];
+    byte[] data = record.data();
+    int from = record.start(field);
+    int to = record.end(field);
+    while (from < to && data[from] == ' ') {
+      from++;
+    }
+    while (to > from && data[to - 1] == ' ') {
+      to--;
+    }
+    int colon = indexOf(data, from, to, ':');
+    if (colon > from && to - colon == 3) {
+      int hour = number(data, from, colon);
+      int minute = number(data, colon + 1, to);
+      if (hour >= 0 && hour < 24 && minute >= 0 && minute < 60) {
+        return hour * 60 + minute;
+      }
+    }
+    throw new IllegalArgumentException("invalid " + what + " '" + text(record, column) + "'");
+  }
+
+  private static int indexOf(byte[] data, int from, int to, char c) {
+    for (int i = from; i < to; i++) {
+      if (data[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the value of the one to four ASCII digits between the offsets, or -1. */
+  private static int number(byte[] data, int from, int to) {
+    if (to <= from || to - from > 4) {
+      return -1;
+    }
+    int value = 0;
+    for (int i = from; i < to; i++) {
+      int digit = data[i] - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+}
@@ -0,0 +1,521 @@
+package calendar.controller.importer;
+
+import calendar.model.Calendar;
+import calendar.model.event.Event;
+import calendar.model.event.EventDetails;
+import calendar.model.event.RecurringEvent;
+import calendar.model.index.TimeKeys;
+import calendar.model.index.ZoneClock;
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Imports the events of an iCalendar (RFC 5545) file, such as the iCalendar exporter writes.
+ *
+ * <p>A VEVENT with an RRULE becomes one series, kept as its rule rather than expanded into
+ * occurrences. Rules that repeat daily or weekly, on any weekdays, for a COUNT or UNTIL a date
+ * are supported; EXDATEs and the dates of overriding VEVENTs with a RECURRENCE-ID are excluded
+ * from the series, and the overrides are added as single events. Other VEVENTs become single
+ * events, added in one bulk step. UTC times and times with a known TZID keep their instant;
+ * floating times are taken as wall-clock times in the calendar's zone. A rule's weekdays are
+ * those of its DTSTART zone, moved to the calendar's. A VEVENT that cannot be imported is
+ * counted and skipped; the report lists the first of them by the line it starts on. */
+public class ICalCalendarImporter implements CalendarImporter {
+  private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+
+  /** Imports the events of the given iCalendar file into the calendar. */
+  @Override
+  public ImportReport importInto(Calendar calendar, String fileName) throws Exception {
+    long begin = System.nanoTime();
+    Path path = Paths.get(fileName);
+    List<Component> components;
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      components = readEvents(reader, fileName);
+    }
+    Map<String, List<LocalDate>> overridden = new HashMap<>();
+    ZoneClock clock = new ZoneClock(calendar.getTimezone());
+    for (Component component : components) {
+      if (component.uid != null && component.recurrenceId != null) {
+        try {
+          LocalDate date = clock.toLocalDateTime(component.instant(component.recurrenceId, clock))
+              .toLocalDate();
+          overridden.computeIfAbsent(component.uid, k -> new ArrayList<>()).add(date);
+        } catch (IllegalArgumentException e) {
+          // The override itself is rejected below.
+        }
+      }
+    }
+    EventBatch singles = new EventBatch(components.size());
+    List<Event> series = new ArrayList<>();
+    for (Component component : components) {
+      try {
+        if (component.rrule == null) {
+          component.addSingle(clock, singles);
+        } else {
+          series.add(component.toSeries(clock,
+              overridden.getOrDefault(component.uid, new ArrayList<>())));
+        }
+      } catch (IllegalArgumentException e) {
+        singles.reject(component.line, e.getMessage());
+      }
+    }
+    int imported = singles.flushInto(calendar);
+    calendar.addEvents(series, false);
+    imported += series.size();
+    return new ImportReport(path.toAbsolutePath().toString(), imported, singles.getRejected(),
+        singles.getRejections(), System.nanoTime() - begin);
+  }
+
+  /** Reads the VEVENTs of the file, unfolding its lines. Other components, and components
+   * nested in a VEVENT such as alarms, are skipped. */
+  private static List<Component> readEvents(BufferedReader reader, String fileName)
+      throws Exception {
+    List<Component> events = new ArrayList<>();
+    Component current = null;
+    String nested = null;
+    boolean seenCalendar = false;
+    int lineNumber = 1;
+    String next = reader.readLine();
+    while (next != null) {
+      int contentLine = lineNumber;
+      StringBuilder content = new StringBuilder(next);
+      while ((next = reader.readLine()) != null) {
+        lineNumber++;
+        if (next.isEmpty() || (next.charAt(0) != ' ' && next.charAt(0) != '\t')) {
+          break;
+        }
+        content.append(next, 1, next.length());
+      }
+      Property property = Property.parse(content.toString());
+      if (property == null) {
+        continue;
+      }
+      if (property.name.equals("BEGIN")) {
+        String component = property.value.trim().toUpperCase();
+        if (component.equals("VCALENDAR")) {
+          seenCalendar = true;
+        } else if (current != null && nested == null) {
+          nested = component;
+        } else if (current == null && component.equals("VEVENT")) {
+          current = new Component(contentLine);
+        }
+      } else if (property.name.equals("END")) {
+        String component = property.value.trim().toUpperCase();
+        if (nested != null) {
+          if (nested.equals(component)) {
+            nested = null;
+          }
+        } else if (current != null && component.equals("VEVENT")) {
+          events.add(current);
+          current = null;
+        }
+      } else if (current != null && nested == null) {
+        current.set(property);
+      }
+    }
+    if (!seenCalendar) {
+      throw new Exception("Not an iCalendar file: " + fileName);
+    }
+    return events;
+  }
+
+  /** A content line: its upper-cased name, the TZID and VALUE parameters, and its raw value. */
+  private static final class Property {
+    private String name;
+    private String tzid;
+    private String valueType;
+    private String value;
+
+    /** Splits a content line, or returns null if it has no colon after its name. Parameter
+     * values may be quoted, and quoted ones may hold colons and semicolons. */
+    private static Property parse(String content) {
+      int colon = -1;
+      boolean quoted = false;
+      List<Integer> semicolons = new ArrayList<>();
+      for (int i = 0; i < content.length() && colon < 0; i++) {
+        char c = content.charAt(i);
+        if (c == '"') {
+          quoted = !quoted;
+        } else if (!quoted && c == ';') {
+          semicolons.add(i);
+        } else if (!quoted && c == ':') {
+          colon = i;
+        }
+      }
+      if (colon < 0) {
+        return null;
+      }
+      Property property = new Property();
+      int nameEnd = semicolons.isEmpty() ? colon : semicolons.get(0);
+      property.name = content.substring(0, nameEnd).trim().toUpperCase();
+      property.value = content.substring(colon + 1);
+      for (int i = 0; i < semicolons.size(); i++) {
+        int end = i + 1 < semicolons.size() ? semicolons.get(i + 1) : colon;
+        String parameter = content.substring(semicolons.get(i) + 1, end);
+        int equals = parameter.indexOf('=');
+        if (equals < 0) {
+          continue;
+        }
+        String key = parameter.substring(0, equals).trim().toUpperCase();
+        String value = parameter.substring(equals + 1).replace("\"", "");
+        if (key.equals("TZID")) {
+          property.tzid = value;
+        } else if (key.equals("VALUE")) {
+          property.valueType = value.toUpperCase();
+        }
+      }
+      return property;
+    }
+  }
+
+  /** The properties of one VEVENT that the calendar can hold. */
+  private static final class Component {
+    private final int line;
+    private String uid;
+    private String summary = "";
+    private String description = "";
+    private String location = "";
+    private boolean isPublic = true;
+    private Property start;
+    private Property end;
+    private Property recurrenceId;
+    private String rrule;
+    private final List<Property> exdates = new ArrayList<>();
+
+    private Component(int line) {
+      this.line = line;
+    }
+
+    private void set(Property property) {
+      switch (property.name) {
+        case "UID":
+          uid = property.value;
+          break;
+        case "SUMMARY":
+          summary = unescape(property.value);
+          break;
+        case "DESCRIPTION":
+          description = unescape(property.value);
+          break;
+        case "LOCATION":
+          location = unescape(property.value);
+          break;
+        case "CLASS":
+          isPublic = property.value.equalsIgnoreCase("PUBLIC");
+          break;
+        case "DTSTART":
+          start = property;
+          break;
+        case "DTEND":
+          end = property;
+          break;
+        case "RECURRENCE-ID":
+          recurrenceId = property;
+          break;
+        case "RRULE":
+          rrule = property.value;
+          break;
+        case "EXDATE":
+          exdates.add(property);
+          break;
+        default:
+          break;
+      }
+    }
+
+    /** Adds the event as a single event. An all-day event ends at 23:59 of the day before its
+     * exclusive DTEND date; an event without a DTEND ends when it starts, or at the end of its
+     * day if it is all day. */
+    private void addSingle(ZoneClock clock, EventBatch batch) {
+      checkSummary();
+      long startMinutes = instant(start, clock);
+      long endMinutes;
+      if (isDate(start)) {
+        LocalDate last = end == null ? date(start.value) : date(end.value).minusDays(1);
+        endMinutes = clock.toEpochMinutes(TimeKeys.toMinutes(last.atTime(23, 59)));
+      } else {
+        endMinutes = end == null ? startMinutes : instant(end, clock);
+      }
+      if (endMinutes < startMinutes) {
+        throw new IllegalArgumentException("end is before start");
+      }
+      batch.add(new EventDetails(summary, description, location, isPublic), startMinutes,
+          endMinutes);
+    }
+
+    /** Returns the event as a series kept as its rule, without the given overridden dates. The
+     * rule's weekdays are read in the zone of DTSTART and moved by the days its start moves in
+     * the calendar's zone; a rule whose zone does not keep the same offset from the calendar's
+     * at every occurrence is rejected. */
+    private RecurringEvent toSeries(ZoneClock clock, List<LocalDate> overridden) {
+      checkSummary();
+      long startMinutes = instant(start, clock);
+      LocalDateTime first = clock.toLocalDateTime(startMinutes);
+      ZoneId ruleZone = ruleZone(clock.getZone());
+      LocalDate ruleDate = Instant.ofEpochSecond(startMinutes * 60).atZone(ruleZone).toLocalDate();
+      int dayShift = (int) ChronoUnit.DAYS.between(ruleDate, first.toLocalDate());
+      LocalDateTime last;
+      if (isDate(start)) {
+        LocalDate lastDate = end == null ? first.toLocalDate() : date(end.value).minusDays(1);
+        last = lastDate.atTime(23, 59);
+      } else {
+        last = end == null ? first : clock.toLocalDateTime(instant(end, clock));
+      }
+      if (!last.toLocalDate().equals(first.toLocalDate()) || last.isBefore(first)) {
+        throw new IllegalArgumentException(
+            "recurring event must start and end on the same day");
+      }
+      Set<DayOfWeek> weekdays = EnumSet.noneOf(DayOfWeek.class);
+      String frequency = "";
+      Integer count = null;
+      LocalDateTime until = null;
+      for (String part : rrule.split(";")) {
+        int equals = part.indexOf('=');
+        String key = (equals < 0 ? part : part.substring(0, equals)).trim().toUpperCase();
+        String value = equals < 0 ? "" : part.substring(equals + 1).trim().toUpperCase();
+        switch (key) {
+          case "FREQ":
+            frequency = value;
+            break;
+          case "INTERVAL":
+            if (!value.equals("1")) {
+              throw new IllegalArgumentException("unsupported RRULE interval " + value);
+            }
+            break;
+          case "COUNT":
+            try {
+              count = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+              throw new IllegalArgumentException("invalid RRULE count '" + value + "'");
+            }
+            break;
+          case "UNTIL":
+            until = untilOf(value, first, clock, dayShift);
+            break;
+          case "BYDAY":
+            for (String code : value.split(",")) {
+              weekdays.add(dayOf(code.trim()).plus(dayShift));
+            }
+            break;
+          case "WKST":
+            break;
+          default:
+            throw new IllegalArgumentException("unsupported RRULE part " + key);
+        }
+      }
+      if (!frequency.equals("WEEKLY") && !frequency.equals("DAILY")) {
+        throw new IllegalArgumentException("unsupported RRULE frequency '" + frequency + "'");
+      }
+      if (weekdays.isEmpty()) {
+        if (frequency.equals("DAILY")) {
+          weekdays = EnumSet.allOf(DayOfWeek.class);
+        } else {
+          weekdays.add(first.getDayOfWeek());
+        }
+      }
+      RecurringEvent recurring;
+      if (count != null) {
+        recurring = new RecurringEvent(
+            summary, first, last, description, location, isPublic, weekdays, count);
+      } else if (until != null) {
+        recurring = new RecurringEvent(
+            summary, first, last, description, location, isPublic, weekdays, until);
+      } else {
+        throw new IllegalArgumentException("RRULE without COUNT or UNTIL is not supported");
+      }
+      if (recurring.isEmpty()) {
+        throw new IllegalArgumentException("RRULE has no occurrences");
+      }
+      for (Property exdate : exdates) {
+        for (String value : exdate.value.split(",")) {
+          Property single = new Property();
+          single.tzid = exdate.tzid;
+          single.valueType = exdate.valueType;
+          single.value = value.trim();
+          recurring.exclude(clock.toLocalDateTime(instant(single, clock)).toLocalDate());
+        }
+      }
+      for (LocalDate date : overridden) {
+        recurring.exclude(date);
+      }
+      if (!keepsOffset(ruleZone, clock, recurring, first.toLocalTime(), last.toLocalTime())) {
+        throw new IllegalArgumentException("RRULE in " + ruleZone.getId()
+            + " does not keep one wall-clock time in " + clock.getZone().getId());
+      }
+      return recurring;
+    }
+
+    private void checkSummary() {
+      if (summary.isEmpty()) {
+        throw new IllegalArgumentException("missing summary");
+      }
+      if (start == null) {
+        throw new IllegalArgumentException("missing DTSTART");
+      }
+    }
+
+    /** Returns the epoch minute of a DATE or DATE-TIME property. A date stands for its midnight
+     * in the calendar's zone. */
+    private long instant(Property property, ZoneClock clock) {
+      String value = property.value.trim();
+      try {
+        if (isDate(property)) {
+          return clock.toEpochMinutes(TimeKeys.toMinutes(date(value).atStartOfDay()));
+        }
+        LocalDateTime dateTime = dateTime(value);
+        if (value.endsWith("Z")) {
+          return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+        }
+        ZoneId zone = zoneOf(property.tzid);
+        if (zone != null) {
+          return Math.floorDiv(dateTime.atZone(zone).toEpochSecond(), 60);
+        }
+        return clock.toEpochMinutes(TimeKeys.toMinutes(dateTime));
+      } catch (DateTimeException | IndexOutOfBoundsException | NumberFormatException e) {
+        throw new IllegalArgumentException(
+            "invalid " + property.name + " '" + property.value + "'");
+      }
+    }
+
+    /** Returns the zone the rule's dates are in: the TZID of DTSTART, UTC for a UTC DTSTART,
+     * or the calendar's zone for a floating one. */
+    private ZoneId ruleZone(ZoneId calendarZone) {
+      if (isDate(start)) {
+        return calendarZone;
+      }
+      if (start.value.trim().endsWith("Z")) {
+        return ZoneOffset.UTC;
+      }
+      ZoneId zone = zoneOf(start.tzid);
+      return zone == null ? calendarZone : zone;
+    }
+
+    /** Returns the last day an UNTIL value lets the series occur on, at the series start time.
+     * A date-time before the start time on its day ends the series the day before. An UNTIL
+     * date is in the rule's zone and is moved by the given days; a floating date-time is in the
+     * zone of DTSTART. */
+    private LocalDateTime untilOf(String value, LocalDateTime first, ZoneClock clock,
+        int dayShift) {
+      Property property = new Property();
+      property.name = "UNTIL";
+      property.value = value;
+      if (value.length() == 8) {
+        return date(value).plusDays(dayShift).atTime(first.toLocalTime());
+      }
+      property.tzid = start.tzid;
+      LocalDateTime until = clock.toLocalDateTime(instant(property, clock));
+      LocalDate lastDate = until.toLocalTime().isBefore(first.toLocalTime())
+          ? until.toLocalDate().minusDays(1)
+          : until.toLocalDate();
+      return lastDate.atTime(first.toLocalTime());
+    }
+  }
+
+  private static boolean isDate(Property property) {
+    return "DATE".equals(property.valueType) || property.value.trim().length() == 8;
+  }
+
+  /** Parses a yyyyMMdd date. */
+  private static LocalDate date(String value) {
+    try {
+      return LocalDate.of(Integer.parseInt(value.substring(0, 4)),
+          Integer.parseInt(value.substring(4, 6)), Integer.parseInt(value.substring(6, 8)));
+    } catch (DateTimeException | IndexOutOfBoundsException | NumberFormatException e) {
+      throw new IllegalArgumentException("invalid date '" + value + "'");
+    }
+  }
+
+  /** Parses a yyyyMMdd'T'HHmmss date-time, with or without a trailing Z, to the minute. */
+  private static LocalDateTime dateTime(String value) {
+    if (value.length() < 15 || value.charAt(8) != 'T') {
+      throw new NumberFormatException(value);
+    }
+    return date(value).atTime(Integer.parseInt(value.substring(9, 11)),
+        Integer.parseInt(value.substring(11, 13)));
+  }
+
+  /** Returns the zone a TZID names, or null if there is none or it is not a known region. */
+  private static ZoneId zoneOf(String tzid) {
+    if (tzid == null) {
+      return null;
+    }
+    try {
+      return ZoneId.of(tzid.startsWith("/") ? tzid.substring(1) : tzid);
+    } catch (DateTimeException e) {
+      return null;
+    }
+  }
+
+  /** Returns whether the UTC offsets of the two zones differ by the same amount at the start and
+   * end of every occurrence of the series. */
+  private static boolean keepsOffset(ZoneId ruleZone, ZoneClock clock, RecurringEvent recurring,
+      LocalTime startTime, LocalTime endTime) {
+    ZoneId calendarZone = clock.getZone();
+    if (ruleZone.equals(calendarZone)) {
+      return true;
+    }
+    LocalDate date = recurring.getFirstDate();
+    int difference = offsetDifference(ruleZone, calendarZone,
+        clock.toEpochMinutes(date.atTime(startTime)));
+    for (; !date.isAfter(recurring.getLastDate()); date = date.plusDays(1)) {
+      if (recurring.occursOn(date)
+          && (offsetDifference(ruleZone, calendarZone,
+              clock.toEpochMinutes(date.atTime(startTime))) != difference
+          || offsetDifference(ruleZone, calendarZone,
+              clock.toEpochMinutes(date.atTime(endTime))) != difference)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int offsetDifference(ZoneId ruleZone, ZoneId calendarZone, long epochMinutes) {
+    Instant instant = Instant.ofEpochSecond(epochMinutes * 60);
+    return calendarZone.getRules().getOffset(instant).getTotalSeconds()
+        - ruleZone.getRules().getOffset(instant).getTotalSeconds();
+  }
+
+  private static DayOfWeek dayOf(String code) {
+    for (int i = 0; i < DAY_CODES.length; i++) {
+      if (DAY_CODES[i].equals(code)) {
+        return DayOfWeek.of(i + 1);
+      }
+    }
+    throw new IllegalArgumentException("unsupported RRULE day " + code);
+  }
+
+  /** Undoes the escaping of an iCalendar text value. */
+  private static String unescape(String value) {
+    if (value.indexOf('\\') < 0) {
+      return value;
+    }
+    StringBuilder text = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' && i + 1 < value.length()) {
+        char next = value.charAt(++i);
+        text.append(next == 'n' || next == 'N' ? '\n' : next);
+      } else {
+        text.append(c);
+      }
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,55 @@
+package calendar.controller.importer;
+
+import java.util.Collections;
+import java.util.List;
+
+/** The outcome of an import: how many rows became events, how many were rejected and why, and
+ * how long it took. */
+public class ImportReport {
+  private final String path;
+  private final int imported;
+  private final int rejected;
+  private final List<String> rejections;
+  private final long elapsedNanos;
+
+  /** Constructs a report. The rejections list the first rejected rows, each as its line number
+   * and reason, and may be shorter than the rejected count. */
+  public ImportReport(
+      String path, int imported, int rejected, List<String> rejections, long elapsedNanos) {
+    this.path = path;
+    this.imported = imported;
+    this.rejected = rejected;
+    this.rejections = Collections.unmodifiableList(rejections);
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /** Returns the absolute path of the imported file. */
+  public String getPath() {
+    return path;
+  }
+
+  /** Returns the number of rows imported as events. */
+  public int getImported() {
+    return imported;
+  }
+
+  /** Returns the number of rows rejected. */
+  public int getRejected() {
+    return rejected;
+  }
+
+  /** Returns the reasons for the first rejected rows. */
+  public List<String> getRejections() {
+    return rejections;
+  }
+
+  /** Returns the time the import took in nanoseconds. */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /** Returns the rows, imported or rejected, read per second. */
+  public double getRowsPerSecond() {
+    return (imported + rejected) * 1e9 / Math.max(1, elapsedNanos);
+  }
+}
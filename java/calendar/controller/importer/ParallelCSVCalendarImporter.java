@@ -0,0 +1,224 @@
+package calendar.controller.importer;
+
+import calendar.model.Calendar;
+import calendar.model.index.ZoneClock;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/** Imports the events of a CSV file like {@link CSVCalendarImporter}, parsing the file on the
+ * common fork-join pool.
+ *
+ * <p>The body of the file is cut into chunks, a few per worker, and two passes run over them in
+ * parallel, each task reading its chunk through a memory map. The first counts the quotes of
+ * each chunk and notes its first line break at either quote parity, which is enough to find the
+ * first line break after each cut that lies outside quotes, so the chunks can be moved to start
+ * on record boundaries even when quoted fields hold line breaks. The second parses each chunk
+ * into its own batch of events with its own row mapper and zone clock. The batches are then
+ * joined in file order and added to the calendar in one bulk step, so the events get the same
+ * ids, and rejected rows the same line numbers, as a sequential import would give them.
+ *
+ * <p>Counting quotes pairs them up correctly only when every quote opens, closes or doubles
+ * inside a quoted field. If a parser finds a quote anywhere else, the file is imported
+ * sequentially instead. */
+public class ParallelCSVCalendarImporter implements CalendarImporter {
+  /** The smallest and largest chunk the file body is cut into. */
+  private static final long MIN_CHUNK = 1 << 20;
+  private static final long MAX_CHUNK = 64 << 20;
+  /** How many chunks each worker of the pool is given, to even out their loads. */
+  private static final int CHUNKS_PER_WORKER = 4;
+  private static final int SCAN_BUFFER = 1 << 16;
+
+  private final ForkJoinPool pool;
+
+  /** Creates an importer that parses on the common fork-join pool. */
+  public ParallelCSVCalendarImporter() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /** Creates an importer that parses on the given pool. */
+  public ParallelCSVCalendarImporter(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /** Imports the events of the given CSV file into the calendar. */
+  @Override
+  public ImportReport importInto(Calendar calendar, String fileName) throws Exception {
+    long begin = System.nanoTime();
+    Path path = Paths.get(fileName);
+    EventBatch merged;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      CsvReader headerReader = new CsvReader(channel, SCAN_BUFFER);
+      EventRowMapper header = CSVCalendarImporter.readHeader(headerReader, fileName);
+      long bodyStart = headerReader.consumed();
+      long size = channel.size();
+      long[] bounds = recordBounds(channel, bodyStart, size);
+      for (int i = 0; i + 1 < bounds.length; i++) {
+        if (bounds[i + 1] - bounds[i] > Integer.MAX_VALUE) {
+          return new CSVCalendarImporter().importInto(calendar, fileName);
+        }
+      }
+      List<ChunkResult> results = runAll(bounds.length - 1, i -> parse(channel, bounds[i],
+          bounds[i + 1], header, calendar.getTimezone(), i == bounds.length - 2));
+      int total = 0;
+      for (ChunkResult result : results) {
+        if (result.irregular) {
+          return new CSVCalendarImporter().importInto(calendar, fileName);
+        }
+        total += result.batch.size();
+      }
+      merged = new EventBatch(total);
+      int lineOffset = headerReader.linesRead();
+      for (ChunkResult result : results) {
+        merged.append(result.batch, lineOffset);
+        lineOffset += result.lines;
+      }
+    }
+    int imported = merged.flushInto(calendar);
+    return new ImportReport(path.toAbsolutePath().toString(), imported, merged.getRejected(),
+        merged.getRejections(), System.nanoTime() - begin);
+  }
+
+  /** Cuts the body of the file, from the given offset to its end, into chunks and returns the
+   * offsets they start at, moved to the starts of records, followed by the end of the file. */
+  private long[] recordBounds(FileChannel channel, long bodyStart, long size)
+      throws IOException {
+    long body = size - bodyStart;
+    long chunk = body / ((long) pool.getParallelism() * CHUNKS_PER_WORKER);
+    chunk = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, chunk));
+    int count = (int) Math.max(1, (body + chunk - 1) / chunk);
+    long finalChunk = chunk;
+    List<ChunkScan> scans = runAll(count, i -> {
+      long from = bodyStart + i * finalChunk;
+      return scan(channel, from, Math.min(size, from + finalChunk));
+    });
+    long[] bounds = new long[count + 1];
+    bounds[0] = bodyStart;
+    bounds[count] = size;
+    int[] parities = new int[count];
+    for (int i = 1; i < count; i++) {
+      parities[i] = parities[i - 1] ^ (int) (scans.get(i - 1).quotes & 1);
+    }
+    for (int i = 1; i < count; i++) {
+      long lineBreak = -1;
+      for (int j = i; j < count && lineBreak < 0; j++) {
+        lineBreak = scans.get(j).firstBreak[parities[j]];
+      }
+      long bound = lineBreak < 0 ? size : afterLineBreak(channel, lineBreak, size);
+      bounds[i] = Math.max(bounds[i - 1], bound);
+    }
+    return bounds;
+  }
+
+  /** Counts the quotes between the offsets and finds the first line break after an even and
+   * after an odd number of them. */
+  private static ChunkScan scan(FileChannel channel, long from, long to) throws IOException {
+    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    byte[] bytes = new byte[SCAN_BUFFER];
+    ChunkScan scan = new ChunkScan();
+    long quotes = 0;
+    long offset = from;
+    while (mapped.hasRemaining()) {
+      int length = Math.min(bytes.length, mapped.remaining());
+      mapped.get(bytes, 0, length);
+      for (int i = 0; i < length; i++) {
+        byte b = bytes[i];
+        if (b == '"') {
+          quotes++;
+        } else if ((b == '\n' || b == '\r') && scan.firstBreak[(int) (quotes & 1)] < 0) {
+          scan.firstBreak[(int) (quotes & 1)] = offset + i;
+        }
+      }
+      offset += length;
+    }
+    scan.quotes = quotes;
+    return scan;
+  }
+
+  /** Returns the offset just past the line break at the given offset, counting CRLF as one. */
+  private static long afterLineBreak(FileChannel channel, long lineBreak, long size)
+      throws IOException {
+    if (lineBreak + 1 < size) {
+      MappedByteBuffer pair = channel.map(FileChannel.MapMode.READ_ONLY, lineBreak, 2);
+      if (pair.get(0) == '\r' && pair.get(1) == '\n') {
+        return lineBreak + 2;
+      }
+    }
+    return lineBreak + 1;
+  }
+
+  /** Parses the records between the offsets into a batch of their own. */
+  private static ChunkResult parse(FileChannel channel, long from, long to,
+      EventRowMapper header, ZoneId zone, boolean last) throws IOException {
+    ChunkResult result = new ChunkResult();
+    result.batch = new EventBatch((int) ((to - from) / 128));
+    if (from == to) {
+      return result;
+    }
+    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    CsvReader reader = new CsvReader(mapped, CSVCalendarImporter.BUFFER_SIZE);
+    EventRowMapper mapper = new EventRowMapper(header);
+    ZoneClock clock = new ZoneClock(zone);
+    boolean unterminated = false;
+    while (reader.next()) {
+      unterminated = reader.isUnterminated();
+      CSVCalendarImporter.mapRecord(reader, mapper, clock, result.batch, 0);
+    }
+    result.lines = reader.linesRead();
+    result.irregular = reader.hasStrayQuote() || (unterminated && !last);
+    return result;
+  }
+
+  /** Runs one task per index on the pool and returns their results in index order. */
+  private <T> List<T> runAll(int count, ChunkTask<T> task) throws IOException {
+    List<ForkJoinTask<T>> tasks = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int index = i;
+      tasks.add(ForkJoinTask.adapt(() -> {
+        try {
+          return task.run(index);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }));
+    }
+    try {
+      pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    List<T> results = new ArrayList<>(count);
+    for (ForkJoinTask<T> forked : tasks) {
+      results.add(forked.join());
+    }
+    return results;
+  }
+
+  /** Works on the chunk with the given index. */
+  private interface ChunkTask<T> {
+    T run(int index) throws IOException;
+  }
+
+  /** The quote count and first line breaks of a chunk, by quote parity before them. */
+  private static final class ChunkScan {
+    private long quotes;
+    private final long[] firstBreak = {-1, -1};
+  }
+
+  /** The events parsed from a chunk, how many lines it spans, and whether its quotes could not
+   * be paired up by counting. */
+  private static final class ChunkResult {
+    private EventBatch batch;
+    private int lines;
+    private boolean irregular;
+  }
+}
@@ -0,0 +1,354 @@
+package calendar.controller.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/** An append-only log of the mutations applied to the calendars since the last snapshot, replayed
+ * at startup to recover them after a crash.
+ *
+ * <p>A record is a list of strings, the operation first and its arguments after it. On disk it
+ * is its payload length, a CRC-32 of the payload and the payload, which holds the number of
+ * strings and then each string as its UTF-8 length, -1 standing for null, and bytes. A crash in
+ * the middle of a write leaves a torn record at the end, which fails its length or checksum test
+ * and is cut off when the journal is next opened.
+ *
+ * <p>Appends are safe to call from several threads and use group commit: whichever appender
+ * finds no write in progress becomes the leader and writes, and under {@link SyncPolicy#ALWAYS}
+ * forces, every record appended so far in one call, while the others wait for it and append into
+ * a second buffer for the next leader. Concurrent appenders thus share one force. */
+public final class Journal implements Closeable {
+  /** How often records are forced under {@link SyncPolicy#INTERVAL}. */
+  public static final long SYNC_INTERVAL_MILLIS = 1000;
+
+  private static final int MAGIC = 0x43414C4A;
+  private static final int VERSION = 1;
+  private static final int HEADER = 8;
+  private static final int INITIAL_BUFFER = 1 << 12;
+
+  private final FileChannel channel;
+  private final SyncPolicy policy;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition written = lock.newCondition();
+  private final Condition closing = lock.newCondition();
+  private final Thread syncer;
+  private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER);
+  private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER);
+  private long appendedCount;
+  private long writtenCount;
+  private boolean writing;
+  private boolean dirty;
+  private boolean closed;
+  private IOException failure;
+
+  /** Handles the records of a journal being replayed. */
+  public interface RecordHandler {
+    /** Applies one record, the operation first and its arguments after it. */
+    void accept(String[] record) throws Exception;
+  }
+
+  private Journal(FileChannel channel, SyncPolicy policy) {
+    this.channel = channel;
+    this.policy = policy;
+    if (policy == SyncPolicy.INTERVAL) {
+      syncer = new Thread(this::syncPeriodically, "journal-sync");
+      syncer.setDaemon(true);
+      syncer.start();
+    } else {
+      syncer = null;
+    }
+  }
+
+  /** Opens the journal at the given path, creating it if there is none, and hands every intact
+   * record in it to the handler, in order, before returning the journal ready for appends. */
+  public static Journal open(Path path, SyncPolicy policy, RecordHandler handler)
+      throws Exception {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      long end = replay(channel, path, handler);
+      channel.position(end);
+      return new Journal(channel, policy);
+    } catch (Exception e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Replays the records of an open journal file, cutting off a torn record at its end, and
+   * returns the offset the next record goes to. An empty file is given a header. */
+  private static long replay(FileChannel channel, Path path, RecordHandler handler)
+      throws Exception {
+    long size = channel.size();
+    if (size == 0) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).flip();
+      while (header.hasRemaining()) {
+        channel.write(header, HEADER - header.remaining());
+      }
+      channel.force(false);
+      return HEADER;
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Journal is too large to replay: " + path);
+    }
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    if (size < HEADER || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a calendar journal: " + path);
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported journal version " + buffer.getInt(4) + ": " + path);
+    }
+    int position = HEADER;
+    CRC32 checksum = new CRC32();
+    while (position + 8 <= size) {
+      int length = buffer.getInt(position);
+      if (length < 4 || length > size - position - 8) {
+        break;
+      }
+      checksum.reset();
+      checksum.update(payload(buffer, position + 8, length));
+      if ((int) checksum.getValue() != buffer.getInt(position + 4)) {
+        break;
+      }
+      handler.accept(decode(payload(buffer, position + 8, length)));
+      position += 8 + length;
+    }
+    if (position < size) {
+      channel.truncate(position);
+      channel.force(false);
+    }
+    return position;
+  }
+
+  /** Returns a buffer over the given bytes of the mapped journal, positioned at their start. */
+  private static ByteBuffer payload(ByteBuffer buffer, int offset, int length) {
+    ByteBuffer payload = buffer.duplicate();
+    payload.limit(offset + length).position(offset);
+    return payload.slice();
+  }
+
+  /** Appends a record and returns once it has been written, and forced if the sync policy asks
+   * for it. */
+  public void append(String... record) throws IOException {
+    byte[] encoded = encode(record);
+    lock.lock();
+    try {
+      checkOpen();
+      if (pending.remaining() < encoded.length) {
+        pending = grow(pending, encoded.length);
+      }
+      pending.put(encoded);
+      long sequence = ++appendedCount;
+      while (writtenCount < sequence) {
+        if (failure != null) {
+          throw new IOException("Journal write failed.", failure);
+        }
+        if (writing) {
+          written.awaitUninterruptibly();
+        } else {
+          writePending();
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Replaces the whole journal with one record, forced before returning. Used once the state
+   * the dropped records led to has been saved elsewhere, such as in a snapshot the new record
+   * loads. */
+  public void reset(String... record) throws IOException {
+    byte[] encoded = encode(record);
+    lock.lock();
+    try {
+      checkOpen();
+      while (writing) {
+        written.awaitUninterruptibly();
+      }
+      pending.clear();
+      writtenCount = appendedCount;
+      channel.truncate(HEADER);
+      ByteBuffer buffer = ByteBuffer.wrap(encoded);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, HEADER + buffer.position());
+      }
+      channel.position(HEADER + encoded.length);
+      channel.force(false);
+      dirty = false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Writes out the pending records as the leader of a group commit. Called with the lock held;
+   * the lock is released during the write so that other threads can append meanwhile. */
+  private void writePending() {
+    writing = true;
+    ByteBuffer batch = pending;
+    pending = spare;
+    long upTo = appendedCount;
+    lock.unlock();
+    IOException error = null;
+    try {
+      batch.flip();
+      while (batch.hasRemaining()) {
+        channel.write(batch);
+      }
+      if (policy == SyncPolicy.ALWAYS) {
+        channel.force(false);
+      }
+    } catch (IOException e) {
+      error = e;
+    } finally {
+      lock.lock();
+    }
+    batch.clear();
+    spare = batch;
+    writing = false;
+    if (error != null) {
+      failure = error;
+    } else {
+      writtenCount = upTo;
+      dirty = policy != SyncPolicy.ALWAYS;
+    }
+    written.signalAll();
+  }
+
+  /** Forces written records once per interval for {@link SyncPolicy#INTERVAL}, without holding
+   * the lock during the force, until the journal is closed. */
+  private void syncPeriodically() {
+    lock.lock();
+    try {
+      while (!closed) {
+        closing.awaitNanos(TimeUnit.MILLISECONDS.toNanos(SYNC_INTERVAL_MILLIS));
+        if (closed || !dirty || failure != null) {
+          continue;
+        }
+        dirty = false;
+        lock.unlock();
+        IOException error = null;
+        try {
+          channel.force(false);
+        } catch (IOException e) {
+          error = e;
+        } finally {
+          lock.lock();
+        }
+        if (error != null && failure == null) {
+          failure = error;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Forces every written record and closes the journal. */
+  @Override
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      while (writing) {
+        written.awaitUninterruptibly();
+      }
+      closed = true;
+      closing.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      if (syncer != null) {
+        syncer.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      if (failure == null) {
+        channel.force(false);
+      }
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Journal is closed.");
+    }
+    if (failure != null) {
+      throw new IOException("Journal write failed.", failure);
+    }
+  }
+
+  private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+    int capacity = buffer.capacity();
+    while (capacity - buffer.position() < needed) {
+      capacity *= 2;
+    }
+    ByteBuffer grown = ByteBuffer.allocate(capacity);
+    buffer.flip();
+    return grown.put(buffer);
+  }
+
+  /** Returns a record framed for the file: length, checksum and payload. */
+  private static byte[] encode(String[] record) {
+    byte[][] strings = new byte[record.length][];
+    int length = 4;
+    for (int i = 0; i < record.length; i++) {
+      if (record[i] != null) {
+        strings[i] = record[i].getBytes(StandardCharsets.UTF_8);
+        length += strings[i].length;
+      }
+      length += 4;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(8 + length);
+    buffer.putInt(length).putInt(0).putInt(record.length);
+    for (byte[] string : strings) {
+      if (string == null) {
+        buffer.putInt(-1);
+      } else {
+        buffer.putInt(string.length).put(string);
+      }
+    }
+    CRC32 checksum = new CRC32();
+    checksum.update(buffer.array(), 8, length);
+    buffer.putInt(4, (int) checksum.getValue());
+    return buffer.array();
+  }
+
+  /** Returns the strings of a record payload whose checksum has been verified. */
+  private static String[] decode(ByteBuffer payload) throws IOException {
+    int count = payload.getInt();
+    if (count < 0 || count > payload.remaining() / 4) {
+      throw new IOException("Corrupt journal record.");
+    }
+    String[] record = new String[count];
+    for (int i = 0; i < count; i++) {
+      int length = payload.getInt();
+      if (length > payload.remaining()) {
+        throw new IOException("Corrupt journal record.");
+      }
+      if (length >= 0) {
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        record[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+    return record;
+  }
+}
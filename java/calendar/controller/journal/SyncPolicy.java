@@ -0,0 +1,17 @@
+package calendar.controller.journal;
+
+/** When the journal forces the records it has written out to the storage device. Every policy
+ * hands each record to the operating system before the mutation it records is acknowledged, so
+ * all of them survive a crash of the application itself; they differ in what an operating system
+ * crash or power loss can take. */
+public enum SyncPolicy {
+  /** Every record is forced to the device before it is acknowledged. Records appended while a
+   * force is in progress are written and forced together by the next one (group commit). */
+  ALWAYS,
+  /** Records are forced by a background thread once per sync interval, so at most the last
+   * interval's records can be lost. */
+  INTERVAL,
+  /** Records are never forced until the journal is closed; the operating system writes them out
+   * in its own time. */
+  NONE
+}
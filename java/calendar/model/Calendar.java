@@ -2,24 +2,86 @@ package calendar.model;
 
 import calendar.model.event.AbstractCalendarEvent;
 import calendar.model.event.Event;
+import calendar.model.event.EventDetails;
+import calendar.model.event.RecurringEvent;
+import calendar.model.event.SingleEvent;
+import calendar.model.index.IntervalTree;
+import calendar.model.index.LongHashMap;
+import calendar.model.index.MergingIterator;
+import calendar.model.index.MinuteBitmaps;
+import calendar.model.index.TimeKeys;
+import calendar.model.index.ZoneClock;
+import calendar.model.index.ZoneShift;
+import calendar.model.store.EventStore;
+import calendar.model.store.StorageMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Year;
+import java.time.YearMonth;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /** Represents a calendar containing events associated with a unique name and time zone.
  * this class provides functionality for managing events, checking for scheduling conflicts,
- * and editing calendar or event properties. */
+ * and editing calendar or event properties. Recurring events are kept as rules and their
+ * occurrences are expanded only for the range being queried. Single events are stored and
+ * indexed by UTC epoch minute; the LocalDateTime values taken and returned by this class are
+ * wall-clock times in the calendar's zone and are converted at this boundary. Every event gets
+ * an id when it is added; single events are found by id through a primitive hash map, and
+ * series occurrences through the block of ids their series was given. Deleting a single event
+ * leaves a tombstone in the event store, which is compacted once a quarter of its rows are
+ * tombstones; deleting an occurrence excludes its date from the series. */
 public class Calendar {
-  private final List<Event> events = new ArrayList<>();
+  private static final Comparator<Event> BY_START = Comparator.comparing(Event::getStart);
+  private static final Comparator<long[]> BY_LOWER_BOUND =
+      (a, b) -> Long.compare(a[0], b[0]);
+  private static final Comparator<Keyed> BY_KEY =
+      Comparator.<Keyed>comparingLong(keyed -> keyed.start)
+          .thenComparingLong(keyed -> keyed.event.getId());
+  /** The number of single events read from the store at a time by lazy range queries. */
+  private static final int STORE_PAGE_SIZE = 512;
+  /** The smallest batch whose single events are added to the store in one go. */
+  private static final int BULK_INSERT_MIN = 64;
+
+  private final EventStore events;
+  private final StorageMode storageMode;
+  private final IntervalTree<RecurringEvent> series = new IntervalTree<>();
+  private final Map<String, List<RecurringEvent>> seriesByName = new HashMap<>();
+  private final LongHashMap<Event> eventsById = new LongHashMap<>();
+  private final NavigableMap<Long, List<RecurringEvent>> seriesById = new TreeMap<>();
+  private final MinuteBitmaps singleBusy = new MinuteBitmaps();
+  private final Map<LocalDate, long[]> busyCache = new HashMap<>();
   private String name;
-  private ZoneId timezone;
+  private ZoneClock clock;
+  private long nextId = 1;
 
   /** Constructs a Calendar with the specified name and timezone. */
   public Calendar(String name, ZoneId timezone) {
+    this(name, timezone, StorageMode.INDEXED);
+  }
+
+  /** Constructs a Calendar that keeps its events in the given storage mode. */
+  public Calendar(String name, ZoneId timezone, StorageMode storageMode) {
     this.name = name;
-    this.timezone = timezone;
+    this.clock = new ZoneClock(timezone);
+    this.storageMode = storageMode;
+    this.events = storageMode.createStore(clock);
   }
 
   /** Returns the calendar name. */
@@ -32,14 +94,33 @@ public class Calendar {
     this.name = name;
   }
 
+  /** Returns the way the calendar keeps its single events in memory. */
+  public StorageMode getStorageMode() {
+    return storageMode;
+  }
+
   /** Returns the calendar timezone. */
   public ZoneId getTimezone() {
-    return timezone;
+    return clock.getZone();
   }
 
-  /** Sets the calendar timezone using the IANA timezone ID. */
+  /** Sets the calendar timezone using the IANA timezone ID. Events keep the instants they
+   * happen at, so their wall-clock times are re-based into the new zone. */
   public void setTimezone(String timezone) {
-    this.timezone = ZoneId.of(timezone);
+    ZoneId target = ZoneId.of(timezone);
+    if (!target.equals(clock.getZone())) {
+      rebase(new ZoneClock(target));
+    }
+  }
+
+  /** Returns the UTC epoch minute of a wall-clock date-time in this calendar's zone. */
+  public long toEpochMinutes(LocalDateTime dateTime) {
+    return clock.toEpochMinutes(dateTime);
+  }
+
+  /** Returns the wall-clock date-time in this calendar's zone of a UTC epoch minute. */
+  public LocalDateTime toLocalDateTime(long epochMinutes) {
+    return clock.toLocalDateTime(epochMinutes);
   }
 
   /** Edits a property of the calendar. */
@@ -47,125 +128,1003 @@ public class Calendar {
     if ("name".equalsIgnoreCase(property)) {
       this.name = newValue;
     } else if ("timezone".equalsIgnoreCase(property)) {
-      this.timezone = ZoneId.of(newValue);
+      setTimezone(newValue);
     } else {
       throw new Exception("Invalid calendar property: " + property);
     }
   }
 
+  /** Switches the calendar to a new clock. Single events are stored by instant, so only the
+   * clock of the store changes and the busy bitmaps, which are kept in wall-clock days, are
+   * rebuilt. Series are rules in wall-clock time and are moved by the shift between the zones:
+   * each series is cut where the shift changes, at DST transitions of either zone, and every
+   * piece is moved as a rule; occurrences that straddle a transition, or that the move would
+   * push across midnight, are stored as single events. */
+  private void rebase(ZoneClock target) {
+    ZoneClock source = clock;
+    List<RecurringEvent> rules = getSeries();
+    for (RecurringEvent recurring : rules) {
+      removeSeries(recurring);
+    }
+    clock = target;
+    events.setClock(target);
+    singleBusy.clear();
+    busyCache.clear();
+    long[] bounds = events.boundsOverlapping(Long.MIN_VALUE, Long.MAX_VALUE);
+    for (int i = 0; i < bounds.length; i += 2) {
+      singleBusy.add(target.toLocalDateTime(bounds[i]), target.toLocalDateTime(bounds[i + 1]));
+    }
+    ZoneShift shift = new ZoneShift(source.getZone(), target.getZone());
+    for (RecurringEvent recurring : rules) {
+      rebaseSeries(recurring, shift, source);
+    }
+  }
+
+  /** Re-inserts a series moved by the shift, one piece per stretch of constant shift. Occurrences
+   * stored as single events keep the instants they had on the source clock. */
+  private void rebaseSeries(RecurringEvent recurring, ZoneShift shift, ZoneClock source) {
+    LocalTime startTime = recurring.getStart().toLocalTime();
+    LocalTime endTime = recurring.getEnd().toLocalTime();
+    LocalDate date = recurring.getFirstDate();
+    while (date != null && !date.isAfter(recurring.getLastDate())) {
+      long start = TimeKeys.toMinutes(date.atTime(startTime));
+      long end = TimeKeys.toMinutes(date.atTime(endTime));
+      long until = shift.validUntil(start);
+      if (end >= until) {
+        Event occurrence = recurring.getOccurrenceOn(date);
+        if (occurrence != null) {
+          insertSingle(new SingleEvent(recurring.getDetails(), occurrence.getStart(),
+              occurrence.getEnd()), occurrence.getId(), source.toEpochMinutes(start),
+              source.toEpochMinutes(end));
+        }
+        date = date.plusDays(1);
+        continue;
+      }
+      LocalDate last = recurring.getLastDate();
+      if (until != Long.MAX_VALUE) {
+        LocalDateTime limit = TimeKeys.toDateTime(until - 1);
+        LocalDate lastInWindow = limit.toLocalDate();
+        if (lastInWindow.atTime(endTime).isAfter(limit)) {
+          lastInWindow = lastInWindow.minusDays(1);
+        }
+        if (lastInWindow.isBefore(last)) {
+          last = lastInWindow;
+        }
+      }
+      long minutes = shift.shiftAt(start);
+      RecurringEvent moved = recurring.shifted(date, last, minutes);
+      if (moved != null) {
+        insertSeries(moved);
+      } else {
+        for (Event occurrence :
+            recurring.getOccurrencesBetween(date.atStartOfDay(), endOfDay(last))) {
+          insertSingle(
+              new SingleEvent(recurring.getDetails(), occurrence.getStart(), occurrence.getEnd()),
+              occurrence.getId(),
+              source.toEpochMinutes(occurrence.getStart()),
+              source.toEpochMinutes(occurrence.getEnd()));
+        }
+      }
+      date = last.plusDays(1);
+    }
+  }
+
   /** Adds an event to the calendar, checking conflicts if autoDecline is true. */
   public void addEvent(Event event, boolean autoDecline) throws Exception {
-    if (autoDecline) {
-      for (Event e : events) {
-        if (conflict(e, event)) {
-          throw new Exception("Event conflict detected.");
+    if (event instanceof RecurringEvent) {
+      addRecurringEvent((RecurringEvent) event, autoDecline);
+      return;
+    }
+    if (event.getEnd().isBefore(event.getStart())) {
+      throw new Exception("Event end must not be before its start.");
+    }
+    if (autoDecline && conflicts(event.getStart(), event.getEnd())) {
+      throw new Exception("Event conflict detected.");
+    }
+    insertSingle(event, nextId++);
+  }
+
+  /** Adds a recurring event as a rule. If autoDecline is true, the series is rejected as a whole
+   * when any of its occurrences conflicts with an existing event. */
+  public void addRecurringEvent(RecurringEvent recurring, boolean autoDecline) throws Exception {
+    addEvents(Collections.singletonList(recurring), autoDecline);
+  }
+
+  /** Adds a batch of events, all or nothing. If autoDecline is true, the batch is sorted by start
+   * and checked in one merge sweep against itself and the existing events in its span; a single
+   * conflict rejects the whole batch and leaves the calendar unchanged. The single events of a
+   * large batch are handed to the store together, as a snapshot load does. */
+  public void addEvents(Collection<? extends Event> batch, boolean autoDecline) throws Exception {
+    List<Event> incoming = new ArrayList<>();
+    for (Event event : batch) {
+      if (event instanceof RecurringEvent) {
+        RecurringEvent recurring = (RecurringEvent) event;
+        if (recurring.getEnd().toLocalTime().isBefore(recurring.getStart().toLocalTime())) {
+          throw new Exception("Event end must not be before its start.");
         }
+        if (autoDecline && !recurring.isEmpty()) {
+          incoming.addAll(
+              recurring.getOccurrencesBetween(recurring.getFirstStart(), recurring.getLastEnd()));
+        }
+      } else {
+        if (event.getEnd().isBefore(event.getStart())) {
+          throw new Exception("Event end must not be before its start.");
+        }
+        incoming.add(event);
+      }
+    }
+    if (autoDecline && !incoming.isEmpty() && sweepConflicts(incoming)) {
+      throw new Exception("Event conflict detected.");
+    }
+    EventDetails[] details = null;
+    long[] ids = null;
+    long[] starts = null;
+    long[] ends = null;
+    int count = 0;
+    for (Event event : batch) {
+      if (event instanceof RecurringEvent) {
+        insertSeries((RecurringEvent) event);
+      } else if (batch.size() < BULK_INSERT_MIN) {
+        insertSingle(event, nextId++);
+      } else {
+        if (details == null) {
+          details = new EventDetails[batch.size()];
+          ids = new long[batch.size()];
+          starts = new long[batch.size()];
+          ends = new long[batch.size()];
+        }
+        details[count] = detailsOf(event);
+        ids[count] = nextId++;
+        starts[count] = toMinutes(event.getStart());
+        ends[count] = toMinutes(event.getEnd());
+        count++;
+      }
+    }
+    if (count > 0) {
+      insertSingles(details, ids, starts, ends, count);
+    }
+  }
+
+  /** Adds a batch of single events without conflict checks in one bulk step, the i-th with the
+   * i-th details record and the i-th UTC epoch-minute bounds. Ids are given in batch order. An
+   * end before its start is moved up to the start. The bounds arrays are overwritten. */
+  public void addSingleEvents(EventDetails[] details, long[] starts, long[] ends, int count) {
+    long[] ids = new long[count];
+    for (int i = 0; i < count; i++) {
+      ids[i] = nextId++;
+    }
+    insertSingles(details, ids, starts, ends, count);
+  }
+
+  /** Returns true if any two incoming events overlap, or if an incoming event overlaps an
+   * existing event or series occurrence. Both sides are reduced to epoch-minute bounds and
+   * merged in start order while tracking the latest end seen on each side, which finds every
+   * overlapping pair in one pass. */
+  private boolean sweepConflicts(List<Event> incoming) {
+    List<long[]> added = new ArrayList<>(incoming.size());
+    for (Event event : incoming) {
+      added.add(new long[] {toMinutes(event.getStart()), toMinutes(event.getEnd())});
+    }
+    added.sort(BY_LOWER_BOUND);
+    long spanStart = added.get(0)[0];
+    long spanEnd = added.get(0)[1];
+    for (long[] bounds : added) {
+      spanEnd = Math.max(spanEnd, bounds[1]);
+    }
+    List<long[]> existing = new ArrayList<>();
+    long[] stored = events.boundsOverlapping(spanStart, spanEnd);
+    for (int k = 0; k < stored.length; k += 2) {
+      existing.add(new long[] {stored[k], stored[k + 1]});
+    }
+    LocalDateTime from = clock.toLocalDateTime(spanStart);
+    LocalDateTime to = clock.toLocalDateTime(spanEnd);
+    for (RecurringEvent recurring : series.overlapping(spanStart, spanEnd)) {
+      for (Event occurrence : recurring.getOccurrencesBetween(from, to)) {
+        existing.add(new long[] {toMinutes(occurrence.getStart()), toMinutes(occurrence.getEnd())});
+      }
+    }
+    existing.sort(BY_LOWER_BOUND);
+    long incomingEnd = Long.MIN_VALUE;
+    long existingEnd = Long.MIN_VALUE;
+    int i = 0;
+    int j = 0;
+    while (i < added.size()) {
+      if (j < existing.size() && existing.get(j)[0] < added.get(i)[0]) {
+        long[] bounds = existing.get(j++);
+        if (incomingEnd >= bounds[0]) {
+          return true;
+        }
+        existingEnd = Math.max(existingEnd, bounds[1]);
+      } else {
+        long[] bounds = added.get(i++);
+        if (incomingEnd >= bounds[0] || existingEnd >= bounds[0]) {
+          return true;
+        }
+        incomingEnd = Math.max(incomingEnd, bounds[1]);
+      }
+    }
+    return j < existing.size() && incomingEnd >= existing.get(j)[0];
+  }
+
+  /** Returns true if any event or series occurrence overlaps the closed range. */
+  private boolean conflicts(LocalDateTime start, LocalDateTime end) {
+    if (events.overlapsAny(toMinutes(start), toMinutes(end))) {
+      return true;
+    }
+    for (RecurringEvent recurring : series.overlapping(toMinutes(start), toMinutes(end))) {
+      if (recurring.overlaps(start, end)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Adds a single event, given in wall-clock time, to the event store under the given id and
+   * returns the stored instance. */
+  private Event insertSingle(Event event, long id) {
+    return insertSingle(event, id, toMinutes(event.getStart()), toMinutes(event.getEnd()));
+  }
+
+  /** Adds a single event spanning the given epoch minutes to the event store under the given id
+   * and returns the stored instance. Wall times in a DST gap or overlap can map to an end before
+   * the start, in which case the end is moved up to the start. */
+  private Event insertSingle(Event event, long id, long start, long end) {
+    Event stored = events.add(event, id, start, Math.max(start, end));
+    eventsById.put(id, stored);
+    singleBusy.add(stored.getStart(), stored.getEnd());
+    LocalDate last = stored.getEnd().toLocalDate();
+    for (LocalDate date = stored.getStart().toLocalDate();
+        !date.isAfter(last);
+        date = date.plusDays(1)) {
+      busyCache.remove(date);
+    }
+    return stored;
+  }
+
+  /** Returns the details record of an event, shared with it when it has one. */
+  private static EventDetails detailsOf(Event event) {
+    return event instanceof AbstractCalendarEvent
+        ? ((AbstractCalendarEvent) event).getDetails()
+        : new EventDetails(
+            event.getName(), event.getDescription(), event.getLocation(), event.isPublic());
+  }
+
+  /** Adds a series to the series indexes, giving it a block of ids if it has none yet. Empty
+   * series are dropped. */
+  private void insertSeries(RecurringEvent recurring) {
+    if (recurring.isEmpty()) {
+      return;
+    }
+    if (recurring.getId() == 0) {
+      recurring.setId(nextId);
+      nextId += recurring.idSpan();
+    }
+    seriesById.computeIfAbsent(recurring.getId(), k -> new ArrayList<>()).add(recurring);
+    busyCache.clear();
+    series.insert(
+        toMinutes(recurring.getFirstStart()), toMinutes(recurring.getLastEnd()), recurring);
+    seriesByName.computeIfAbsent(recurring.getName(), n -> new ArrayList<>()).add(recurring);
+  }
+
+  /** Removes a series from the series indexes. */
+  private void removeSeries(RecurringEvent recurring) {
+    busyCache.clear();
+    series.remove(
+        toMinutes(recurring.getFirstStart()), toMinutes(recurring.getLastEnd()), recurring);
+    unindexSeriesName(recurring);
+    List<RecurringEvent> pieces = seriesById.get(recurring.getId());
+    pieces.remove(recurring);
+    if (pieces.isEmpty()) {
+      seriesById.remove(recurring.getId());
+    }
+  }
+
+  /** Returns the event or series occurrence with the given id, or null if there is none. */
+  public Event getEventById(long id) {
+    Event event = eventsById.get(id);
+    if (event != null) {
+      return event;
+    }
+    RecurringEvent recurring = seriesWithId(id);
+    return recurring == null ? null : recurring.getOccurrenceOn(recurring.dateOf(id));
+  }
+
+  /** Edits the event with the given id. A series occurrence is first materialized under the same
+   * id so the edit does not affect the rest of the series. */
+  public boolean editEventById(long id, String property, String newValue) {
+    Event event = eventsById.get(id);
+    if (event == null) {
+      RecurringEvent recurring = seriesWithId(id);
+      if (recurring == null) {
+        return false;
+      }
+      event = materialize(recurring, recurring.getOccurrenceOn(recurring.dateOf(id)));
+    }
+    events.setProperty(event, property, newValue);
+    return true;
+  }
+
+  /** Returns the series piece with an occurrence under the given id, or null if there is none.
+   * Pieces split from one series share its block, which starts at or below the id. */
+  private RecurringEvent seriesWithId(long id) {
+    Map.Entry<Long, List<RecurringEvent>> block = seriesById.floorEntry(id);
+    if (block == null) {
+      return null;
+    }
+    for (RecurringEvent recurring : block.getValue()) {
+      if (recurring.occursOn(recurring.dateOf(id))) {
+        return recurring;
       }
     }
-    events.add(event);
+    return null;
   }
 
   /** Returns the list of events on a given date. */
   public List<Event> getEventsOn(LocalDate date) {
-    List<Event> result = new ArrayList<>();
-    for (Event e : events) {
-      if (e.getStart().toLocalDate().equals(date)) {
-        result.add(e);
+    List<Event> result = events.startingBetween(
+        toMinutes(date.atStartOfDay()), toMinutes(date.plusDays(1).atStartOfDay()) - 1);
+    for (RecurringEvent recurring : seriesOverlapping(date.atStartOfDay(), endOfDay(date))) {
+      Event occurrence = recurring.getOccurrenceOn(date);
+      if (occurrence != null) {
+        result.add(occurrence);
+      }
+    }
+    result.sort(BY_START);
+    return result;
+  }
+
+  /** Returns the events starting on each day of the given month, keyed by date. Days without
+   * events are absent from the map. */
+  public Map<LocalDate, List<Event>> getEventsByDay(YearMonth month) {
+    Map<LocalDate, List<Event>> result = new TreeMap<>();
+    long first = toMinutes(month.atDay(1).atStartOfDay());
+    long last = toMinutes(month.plusMonths(1).atDay(1).atStartOfDay()) - 1;
+    for (Event event : events.startingBetween(first, last)) {
+      result.computeIfAbsent(event.getStart().toLocalDate(), d -> new ArrayList<>()).add(event);
+    }
+    LocalDateTime from = month.atDay(1).atStartOfDay();
+    LocalDateTime to = endOfDay(month.atEndOfMonth());
+    for (RecurringEvent recurring : seriesOverlapping(from, to)) {
+      for (Event occurrence : recurring.getOccurrencesBetween(from, to)) {
+        result
+            .computeIfAbsent(occurrence.getStart().toLocalDate(), d -> new ArrayList<>())
+            .add(occurrence);
       }
     }
+    for (List<Event> day : result.values()) {
+      day.sort(BY_START);
+    }
     return result;
   }
 
+  /** Returns the number of events and series occurrences starting on each day of the month, with
+   * the first day at index 0. */
+  public int[] countEventsByDay(YearMonth month) {
+    return countEventsByDay(month.atDay(1), month.lengthOfMonth());
+  }
+
+  /** Returns the number of events and series occurrences starting on each day of the year, with
+   * January 1 at index 0. */
+  public int[] countEventsByDay(Year year) {
+    return countEventsByDay(year.atDay(1), year.length());
+  }
+
+  /** Counts the starts on each of the given number of days in one pass over the primitive starts
+   * of the stored events, plus one walk over the days of each series active in the span. No
+   * events or occurrences are materialized. */
+  private int[] countEventsByDay(LocalDate first, int days) {
+    int[] counts = new int[days];
+    LocalDate last = first.plusDays(days - 1);
+    long firstDay = first.toEpochDay();
+    for (long start : events.startsBetween(
+        toMinutes(first.atStartOfDay()), toMinutes(last.plusDays(1).atStartOfDay()) - 1)) {
+      int index = (int) (Math.floorDiv(clock.toLocalMinutes(start), 1440) - firstDay);
+      if (index >= 0 && index < days) {
+        counts[index]++;
+      }
+    }
+    for (RecurringEvent recurring : seriesOverlapping(first.atStartOfDay(), endOfDay(last))) {
+      LocalDate from = recurring.getFirstDate().isAfter(first) ? recurring.getFirstDate() : first;
+      LocalDate to = recurring.getLastDate().isBefore(last) ? recurring.getLastDate() : last;
+      for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+        if (recurring.occursOn(date)) {
+          counts[(int) (date.toEpochDay() - firstDay)]++;
+        }
+      }
+    }
+    return counts;
+  }
+
   /** Returns the list of events between the given start and end date-times. */
   public List<Event> getEventsBetween(LocalDateTime start, LocalDateTime end) {
-    List<Event> result = new ArrayList<>();
-    for (Event e : events) {
-      if (!e.getStart().isAfter(end) && !e.getEnd().isBefore(start)) {
-        result.add(e);
-      }
+    List<Event> result = events.overlapping(toMinutes(start), toMinutes(end));
+    List<RecurringEvent> active = seriesOverlapping(start, end);
+    if (active.isEmpty()) {
+      return result;
     }
+    for (RecurringEvent recurring : active) {
+      result.addAll(recurring.getOccurrencesBetween(start, end));
+    }
+    result.sort(BY_START);
     return result;
   }
 
+  /** Returns a lazy iterator over the events and series occurrences overlapping the closed range,
+   * in order of start and then id. Single events are read from the store a page at a time and
+   * occurrences are expanded as they are reached, so memory stays bounded however wide the
+   * range. The calendar must not be modified during the iteration. */
+  public Iterator<Event> iterateEventsBetween(LocalDateTime start, LocalDateTime end) {
+    return unkeyed(eventsAfter(toMinutes(start), toMinutes(end), Long.MIN_VALUE, 0));
+  }
+
+  /** Returns an iterator over the events of keyed ones. */
+  private static Iterator<Event> unkeyed(Iterator<Keyed> keyed) {
+    return new Iterator<Event>() {
+      @Override
+      public boolean hasNext() {
+        return keyed.hasNext();
+      }
+
+      @Override
+      public Event next() {
+        return keyed.next().event;
+      }
+    };
+  }
+
+  /** Returns a lazy, sequential stream of the events overlapping the closed range, in the order
+   * of {@link #iterateEventsBetween}. */
+  public Stream<Event> streamEventsBetween(LocalDateTime start, LocalDateTime end) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+        iterateEventsBetween(start, end), Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  /** Returns up to pageSize events overlapping the closed range, in the order of {@link
+   * #iterateEventsBetween}, resuming after the page that handed out the given token, or from the
+   * beginning of the range if the token is null. A token records the start and id of the last
+   * event of its page, so it stays valid when the calendar is edited between pages. */
+  public EventPage getEventsPage(
+      LocalDateTime start, LocalDateTime end, int pageSize, String resumeToken) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive.");
+    }
+    long afterStart = Long.MIN_VALUE;
+    long afterId = 0;
+    if (resumeToken != null) {
+      String[] parts = resumeToken.split(":");
+      try {
+        afterStart = Long.parseLong(parts[0]);
+        afterId = Long.parseLong(parts[1]);
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException("Invalid resume token: " + resumeToken);
+      }
+    }
+    Iterator<Keyed> keyed = eventsAfter(toMinutes(start), toMinutes(end), afterStart, afterId);
+    List<Event> page = new ArrayList<>();
+    Keyed last = null;
+    while (page.size() < pageSize && keyed.hasNext()) {
+      last = keyed.next();
+      page.add(last.event);
+    }
+    String token = keyed.hasNext() ? last.start + ":" + last.event.getId() : null;
+    return new EventPage(page, token);
+  }
+
+  /** Returns a lazy merge of the single events and series occurrences overlapping the epoch
+   * range that come after the given start and id. */
+  private Iterator<Keyed> eventsAfter(long start, long end, long afterStart, long afterId) {
+    List<Iterator<Keyed>> sources = new ArrayList<>();
+    sources.add(new StoreCursor(start, end, afterStart, afterId));
+    long from = Math.max(start, afterStart);
+    LocalDate firstDate = clock.toLocalDateTime(from).toLocalDate();
+    for (RecurringEvent recurring : series.overlapping(from, end)) {
+      sources.add(new OccurrenceCursor(
+          recurring.occurrencesFrom(firstDate), start, end, afterStart, afterId));
+    }
+    return new MergingIterator<>(sources, BY_KEY);
+  }
+
+  /** An event paired with its start in epoch minutes, the key lazy range queries order and
+   * resume by. Stored events are keyed by their stored instant, which is exact even for wall
+   * times that occur twice. */
+  private static final class Keyed {
+    private final long start;
+    private final Event event;
+
+    private Keyed(long start, Event event) {
+      this.start = start;
+      this.event = event;
+    }
+  }
+
+  /** Reads the single events of a range from the store one page at a time. */
+  private final class StoreCursor implements Iterator<Keyed> {
+    private final long start;
+    private final long end;
+    private long afterStart;
+    private long afterId;
+    private Iterator<Event> page = Collections.emptyIterator();
+    private boolean exhausted;
+
+    private StoreCursor(long start, long end, long afterStart, long afterId) {
+      this.start = start;
+      this.end = end;
+      this.afterStart = afterStart;
+      this.afterId = afterId;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (!page.hasNext() && !exhausted) {
+        List<Event> next = events.overlappingAfter(start, end, afterStart, afterId,
+            STORE_PAGE_SIZE);
+        exhausted = next.size() < STORE_PAGE_SIZE;
+        page = next.iterator();
+      }
+      return page.hasNext();
+    }
+
+    @Override
+    public Keyed next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Event event = page.next();
+      afterStart = events.startOf(event);
+      afterId = event.getId();
+      return new Keyed(afterStart, event);
+    }
+  }
+
+  /** Filters the occurrences of one series down to those overlapping an epoch range that come
+   * after a start and id, stopping at the first occurrence that starts after the range. */
+  private final class OccurrenceCursor implements Iterator<Keyed> {
+    private final Iterator<Event> occurrences;
+    private final long start;
+    private final long end;
+    private final long afterStart;
+    private final long afterId;
+    private Keyed next;
+
+    private OccurrenceCursor(
+        Iterator<Event> occurrences, long start, long end, long afterStart, long afterId) {
+      this.occurrences = occurrences;
+      this.start = start;
+      this.end = end;
+      this.afterStart = afterStart;
+      this.afterId = afterId;
+      advance();
+    }
+
+    private void advance() {
+      next = null;
+      while (occurrences.hasNext()) {
+        Event occurrence = occurrences.next();
+        long occurrenceStart = toMinutes(occurrence.getStart());
+        if (occurrenceStart > end) {
+          return;
+        }
+        if (toMinutes(occurrence.getEnd()) >= start
+            && (occurrenceStart > afterStart
+                || occurrenceStart == afterStart && occurrence.getId() > afterId)) {
+          next = new Keyed(occurrenceStart, occurrence);
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Keyed next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      Keyed result = next;
+      advance();
+      return result;
+    }
+  }
+
+  /** Returns the groups of mutually overlapping events in the whole calendar. */
+  public List<List<Event>> getConflicts() {
+    List<Event> all = events.overlapping(Long.MIN_VALUE, Long.MAX_VALUE);
+    series.forEach(recurring -> all.addAll(
+        recurring.getOccurrencesBetween(recurring.getFirstStart(), recurring.getLastEnd())));
+    return conflictClusters(all);
+  }
+
+  /** Returns the groups of mutually overlapping events among those overlapping the range. */
+  public List<List<Event>> getConflicts(LocalDateTime start, LocalDateTime end) {
+    return conflictClusters(getEventsBetween(start, end));
+  }
+
+  /** Sorts the events by start and sweeps them once, closing a cluster whenever an event starts
+   * after the latest end seen so far. Every cluster with two or more events is a set of events
+   * connected by overlaps, so the report costs O(n log n + k). */
+  private List<List<Event>> conflictClusters(List<Event> candidates) {
+    int n = candidates.size();
+    long[] starts = new long[n];
+    long[] ends = new long[n];
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      starts[i] = toMinutes(candidates.get(i).getStart());
+      ends[i] = toMinutes(candidates.get(i).getEnd());
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+    List<List<Event>> clusters = new ArrayList<>();
+    List<Event> cluster = new ArrayList<>();
+    long clusterEnd = Long.MIN_VALUE;
+    for (int index : order) {
+      if (!cluster.isEmpty() && starts[index] > clusterEnd) {
+        if (cluster.size() > 1) {
+          clusters.add(cluster);
+        }
+        cluster = new ArrayList<>();
+      }
+      cluster.add(candidates.get(index));
+      clusterEnd = cluster.size() == 1 ? ends[index] : Math.max(clusterEnd, ends[index]);
+    }
+    if (cluster.size() > 1) {
+      clusters.add(cluster);
+    }
+    return clusters;
+  }
+
   /** Returns true if an event covers the given date-time. */
   public boolean isBusy(LocalDateTime dateTime) {
-    for (Event e : events) {
-      if (!dateTime.isBefore(e.getStart()) && !dateTime.isAfter(e.getEnd())) {
-        return true;
+    return MinuteBitmaps.isSet(
+        busyMinutes(dateTime.toLocalDate()), MinuteBitmaps.minuteOfDay(dateTime));
+  }
+
+  /** Returns a copy of the minute-resolution busy bitmap of the given day, covering single
+   * events and series occurrences alike. */
+  public long[] getBusyMinutes(LocalDate date) {
+    return busyMinutes(date).clone();
+  }
+
+  /** Returns the cached busy bitmap of a day, building it from the single-event bitmap and the
+   * series occurrences on that day when it is not cached. */
+  private long[] busyMinutes(LocalDate date) {
+    long[] words = busyCache.get(date);
+    if (words == null) {
+      words = singleBusy.copyOf(date);
+      for (RecurringEvent recurring : seriesOverlapping(date.atStartOfDay(), endOfDay(date))) {
+        Event occurrence = recurring.getOccurrenceOn(date);
+        if (occurrence != null) {
+          MinuteBitmaps.setRange(
+              words,
+              MinuteBitmaps.minuteOfDay(occurrence.getStart()),
+              MinuteBitmaps.minuteOfDay(occurrence.getEnd()));
+        }
       }
+      busyCache.put(date, words);
     }
-    return false;
+    return words;
+  }
+
+  /** Returns the series whose span overlaps the closed range. */
+  private List<RecurringEvent> seriesOverlapping(LocalDateTime start, LocalDateTime end) {
+    return series.overlapping(toMinutes(start), toMinutes(end));
+  }
+
+  private static LocalDateTime endOfDay(LocalDate date) {
+    return date.atTime(23, 59);
   }
 
-  /** Checks if two events conflict. */
-  private boolean conflict(Event e1, Event e2) {
-    return !(e2.getEnd().isBefore(e1.getStart()) || e2.getStart().isAfter(e1.getEnd()));
+  /** Converts a wall-clock date-time in this calendar's zone to the epoch minute used by the
+   * indexes. */
+  private long toMinutes(LocalDateTime dateTime) {
+    return clock.toEpochMinutes(dateTime);
   }
 
-  /** Edits a single event matching name and start/end times. */
+  /** Edits a single event matching name and start/end times. A series occurrence is first
+   * materialized as a separate event so the edit does not affect the rest of the series. */
   public boolean editSingleEvent(
       String property, String name, LocalDateTime start, LocalDateTime end, String newValue) {
-    for (Event event : events) {
-      if (event.getName().equals(name)
-          && event.getStart().equals(start)
-          && event.getEnd().equals(end)) {
-        updateProperty((AbstractCalendarEvent) event, property, newValue);
+    for (Event event : events.named(name, toMinutes(start), toMinutes(start))) {
+      if (event.getEnd().equals(end)) {
+        events.setProperty(event, property, newValue);
+        return true;
+      }
+    }
+    for (RecurringEvent recurring : seriesByName.getOrDefault(name, new ArrayList<>())) {
+      Event occurrence = recurring.getOccurrenceOn(start.toLocalDate());
+      if (occurrence != null
+          && occurrence.getStart().equals(start)
+          && occurrence.getEnd().equals(end)) {
+        events.setProperty(materialize(recurring, occurrence), property, newValue);
         return true;
       }
     }
     return false;
   }
 
-  /** Edits events with the given name and start time. */
+  /** Detaches one occurrence from its series and stores it as a single event that keeps the
+   * occurrence's id and shares the series' details until it is edited. */
+  private Event materialize(RecurringEvent recurring, Event occurrence) {
+    recurring.exclude(occurrence.getStart().toLocalDate());
+    return insertSingle(
+        new SingleEvent(recurring.getDetails(), occurrence.getStart(), occurrence.getEnd()),
+        occurrence.getId());
+  }
+
+  /** Edits events with the given name and start time. Series that begin before the start time
+   * are split so that only their later occurrences are edited. */
   public int editEventsFrom(String property, String name, LocalDateTime start, String newValue) {
-    int count = 0;
-    for (Event event : events) {
-      if (event.getName().equals(name)
-          && (event.getStart().equals(start) || event.getStart().isAfter(start))) {
-        updateProperty((AbstractCalendarEvent) event, property, newValue);
-        count++;
+    int count =
+        updateAll(events.named(name, toMinutes(start), Long.MAX_VALUE), property, newValue);
+    for (RecurringEvent recurring :
+        new ArrayList<>(seriesByName.getOrDefault(name, new ArrayList<>()))) {
+      RecurringEvent target = splitFrom(recurring, start);
+      if (target != null && !target.isEmpty()) {
+        count += target.size();
+        updateSeriesProperty(target, property, newValue);
       }
     }
     return count;
   }
 
-  /** Edits all events with the given name. */
+  /** Returns the part of a series whose occurrences start at or after the given time, splitting
+   * the series if it has earlier occurrences, or null if every occurrence starts earlier. */
+  private RecurringEvent splitFrom(RecurringEvent recurring, LocalDateTime start) {
+    if (recurring.getLastStart().isBefore(start)) {
+      return null;
+    }
+    LocalDate splitDate = start.toLocalDate();
+    if (splitDate.atTime(recurring.getStart().toLocalTime()).isBefore(start)) {
+      splitDate = splitDate.plusDays(1);
+    }
+    if (!splitDate.isAfter(recurring.getFirstDate())) {
+      return recurring;
+    }
+    removeSeries(recurring);
+    insertSeries(recurring.slice(recurring.getFirstDate(), splitDate.minusDays(1)));
+    RecurringEvent target = recurring.slice(splitDate, recurring.getLastDate());
+    insertSeries(target);
+    return target;
+  }
+
+  /** Edits all events with the given name. A series is edited with a single write. */
   public int editEvents(String property, String name, String newValue) {
+    int count =
+        updateAll(events.named(name, Long.MIN_VALUE, Long.MAX_VALUE), property, newValue);
+    for (RecurringEvent recurring :
+        new ArrayList<>(seriesByName.getOrDefault(name, new ArrayList<>()))) {
+      count += recurring.size();
+      updateSeriesProperty(recurring, property, newValue);
+    }
+    return count;
+  }
+
+  /** Applies a property update to each of the given events and returns how many were edited. */
+  private int updateAll(List<Event> matches, String property, String newValue) {
+    for (Event event : matches) {
+      events.setProperty(event, property, newValue);
+    }
+    return matches.size();
+  }
+
+  /** Removes a series from the series name index. */
+  private void unindexSeriesName(RecurringEvent recurring) {
+    List<RecurringEvent> named = seriesByName.get(recurring.getName());
+    named.remove(recurring);
+    if (named.isEmpty()) {
+      seriesByName.remove(recurring.getName());
+    }
+  }
+
+  /** Updates a property of a whole series, rekeying the series name index on a rename. */
+  private void updateSeriesProperty(RecurringEvent recurring, String property, String newValue) {
+    if ("name".equalsIgnoreCase(property)) {
+      unindexSeriesName(recurring);
+      recurring.setName(newValue);
+      seriesByName.computeIfAbsent(newValue, n -> new ArrayList<>()).add(recurring);
+    } else {
+      recurring.setProperty(property, newValue);
+    }
+  }
+
+  /** Deletes the event or series occurrence with the given id. */
+  public boolean deleteEventById(long id) {
+    Event event = eventsById.get(id);
+    if (event != null) {
+      removeSingle(event);
+      compactIfNeeded();
+      return true;
+    }
+    RecurringEvent recurring = seriesWithId(id);
+    if (recurring == null) {
+      return false;
+    }
+    excludeOccurrence(recurring, recurring.dateOf(id));
+    return true;
+  }
+
+  /** Deletes a single event or series occurrence matching name and start/end times. */
+  public boolean deleteSingleEvent(String name, LocalDateTime start, LocalDateTime end) {
+    for (Event event : events.named(name, toMinutes(start), toMinutes(start))) {
+      if (event.getEnd().equals(end)) {
+        removeSingle(event);
+        compactIfNeeded();
+        return true;
+      }
+    }
+    for (RecurringEvent recurring : seriesByName.getOrDefault(name, new ArrayList<>())) {
+      Event occurrence = recurring.getOccurrenceOn(start.toLocalDate());
+      if (occurrence != null
+          && occurrence.getStart().equals(start)
+          && occurrence.getEnd().equals(end)) {
+        excludeOccurrence(recurring, start.toLocalDate());
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Deletes the events with the given name that start at or after the start time and returns
+   * how many were deleted. Series that begin earlier are split and keep their earlier part. */
+  public int deleteEventsFrom(String name, LocalDateTime start) {
     int count = 0;
-    for (Event event : events) {
-      if (event.getName().equals(name)) {
-        updateProperty((AbstractCalendarEvent) event, property, newValue);
-        count++;
+    for (Event event : events.named(name, toMinutes(start), Long.MAX_VALUE)) {
+      removeSingle(event);
+      count++;
+    }
+    for (RecurringEvent recurring :
+        new ArrayList<>(seriesByName.getOrDefault(name, new ArrayList<>()))) {
+      RecurringEvent target = splitFrom(recurring, start);
+      if (target != null) {
+        count += target.size();
+        removeSeries(target);
       }
     }
+    compactIfNeeded();
     return count;
   }
 
-  /** Updates an event property based on a string identifier. */
-  private void updateProperty(AbstractCalendarEvent event, String property, String newValue) {
-    switch (property.toLowerCase()) {
-      case "name":
-        event.setName(newValue);
-        break;
-      case "description":
-        event.setDescription(newValue);
-        break;
-      case "location":
-        event.setLocation(newValue);
-        break;
-      case "ispublic":
-        event.setIsPublic(Boolean.parseBoolean(newValue));
-        break;
-      default:
-        break;
+  /** Deletes all events with the given name and returns how many were deleted. */
+  public int deleteEvents(String name) {
+    int count = 0;
+    for (Event event : events.named(name, Long.MIN_VALUE, Long.MAX_VALUE)) {
+      removeSingle(event);
+      count++;
     }
+    for (RecurringEvent recurring :
+        new ArrayList<>(seriesByName.getOrDefault(name, new ArrayList<>()))) {
+      count += recurring.size();
+      removeSeries(recurring);
+    }
+    compactIfNeeded();
+    return count;
+  }
+
+  /** Leaves a tombstone for a stored single event and recomputes the busy bitmaps of the days
+   * it covered from the events that remain. */
+  private void removeSingle(Event stored) {
+    LocalDate first = stored.getStart().toLocalDate();
+    LocalDate last = stored.getEnd().toLocalDate();
+    events.remove(stored);
+    eventsById.remove(stored.getId());
+    for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+      LocalDateTime dayStart = date.atStartOfDay();
+      LocalDateTime dayEnd = endOfDay(date);
+      singleBusy.remove(date);
+      long[] bounds = events.boundsOverlapping(toMinutes(dayStart), toMinutes(dayEnd));
+      for (int i = 0; i < bounds.length; i += 2) {
+        LocalDateTime from = clock.toLocalDateTime(bounds[i]);
+        LocalDateTime to = clock.toLocalDateTime(bounds[i + 1]);
+        from = from.isBefore(dayStart) ? dayStart : from;
+        to = to.isAfter(dayEnd) ? dayEnd : to;
+        if (!to.isBefore(from)) {
+          singleBusy.add(from, to);
+        }
+      }
+      busyCache.remove(date);
+    }
+  }
+
+  /** Removes one occurrence from a series. */
+  private void excludeOccurrence(RecurringEvent recurring, LocalDate date) {
+    recurring.exclude(date);
+    busyCache.remove(date);
+  }
+
+  /** Compacts the event store once a quarter of its rows are tombstones, so the cost of a
+   * compaction is spread over the deletions that led to it, and then refreshes the id map with
+   * the instances the compacted store hands out. */
+  private void compactIfNeeded() {
+    int tombstones = events.tombstones();
+    if (tombstones == 0 || tombstones * 4L < events.size() + (long) tombstones) {
+      return;
+    }
+    events.compact();
+    eventsById.clear();
+    for (Event event : events.overlapping(Long.MIN_VALUE, Long.MAX_VALUE)) {
+      eventsById.put(event.getId(), event);
+    }
+  }
+
+  /** Returns the id the next event added will get. */
+  long getNextId() {
+    return nextId;
+  }
+
+  /** Returns a lazy iterator over the stored single events in order of start and then id. */
+  public Iterator<Event> singleEvents() {
+    return unkeyed(new StoreCursor(Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, 0));
+  }
+
+  /** Returns the start, in epoch minutes, of a single event handed out by this calendar. */
+  public long startOf(Event stored) {
+    return events.startOf(stored);
+  }
+
+  /** Returns the end, in epoch minutes, of a single event handed out by this calendar. */
+  public long endOf(Event stored) {
+    return events.endOf(stored);
+  }
+
+  /** Returns the series of the calendar, each as the rule it is kept as. */
+  public List<RecurringEvent> getSeries() {
+    List<RecurringEvent> rules = new ArrayList<>(series.size());
+    series.forEach(rules::add);
+    return rules;
+  }
+
+  /** Adds a batch of single events read back from a snapshot, the i-th with the i-th details
+   * record, saved id and epoch bounds. The bounds arrays are overwritten. */
+  void restoreSingles(EventDetails[] details, long[] ids, long[] starts, long[] ends, int count) {
+    insertSingles(details, ids, starts, ends, count);
+    for (int i = 0; i < count; i++) {
+      nextId = Math.max(nextId, ids[i] + 1);
+    }
+  }
+
+  /** Adds a batch of single events, the i-th with the i-th details record, id and epoch bounds.
+   * The store indexes the batch in one go. The bounds arrays are overwritten with wall-clock
+   * minute keys to build the busy bitmaps. */
+  private void insertSingles(
+      EventDetails[] details, long[] ids, long[] starts, long[] ends, int count) {
+    for (int i = 0; i < count; i++) {
+      ends[i] = Math.max(starts[i], ends[i]);
+    }
+    List<Event> stored = events.addAll(details, ids, starts, ends, count);
+    eventsById.ensureCapacity(eventsById.size() + count);
+    for (int i = 0; i < count; i++) {
+      eventsById.put(ids[i], stored.get(i));
+      starts[i] = clock.toLocalMinutes(starts[i]);
+      ends[i] = clock.toLocalMinutes(ends[i]);
+    }
+    singleBusy.addAll(starts, ends, count);
+    busyCache.clear();
+  }
+
+  /** Adds a series read back from a snapshot, keeping the block of ids it was saved with. */
+  void restoreSeries(RecurringEvent recurring) {
+    insertSeries(recurring);
+    nextId = Math.max(nextId, recurring.getId() + recurring.idSpan());
+  }
+
+  /** Sets the id the next event added will get, as saved in a snapshot. Ids already handed out
+   * are never given again. */
+  void restoreNextId(long id) {
+    nextId = Math.max(nextId, id);
   }
 
   /** Finds an event by its name and start time. */
   public Event findEventByNameAndStart(String eventName, LocalDateTime start) {
-    for (Event e : events) {
-      if (e.getName().equals(eventName) && e.getStart().equals(start)) {
-        return e;
+    List<Event> matches = events.named(eventName, toMinutes(start), toMinutes(start));
+    if (!matches.isEmpty()) {
+      return matches.get(0);
+    }
+    for (RecurringEvent recurring : seriesByName.getOrDefault(eventName, new ArrayList<>())) {
+      Event occurrence = recurring.getOccurrenceOn(start.toLocalDate());
+      if (occurrence != null && occurrence.getStart().equals(start)) {
+        return occurrence;
       }
     }
     return null;
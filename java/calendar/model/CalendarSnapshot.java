@@ -0,0 +1,379 @@
+package calendar.model;
+
+import calendar.model.event.Event;
+import calendar.model.event.EventDetails;
+import calendar.model.event.RecurringEvent;
+import calendar.model.index.TimeKeys;
+import calendar.model.store.StorageMode;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/** Saves calendars to, and loads them from, a compact binary snapshot.
+ *
+ * <p>A snapshot starts with a magic number and a format version, followed by one record for
+ * each calendar, each of its single events and each of its series, in that order, and ends with
+ * a dictionary of every string the records use, the offset of that dictionary and a CRC-32 of
+ * everything before it, checked before any record is decoded. Each record is
+ * its length, a tag and a payload, so a reader can skip fields it does not know. Records refer to
+ * strings by their index in the dictionary, -1 standing for null, and hold times as epoch
+ * minutes for single events and as wall-clock minute keys and epoch days for series. Events keep
+ * their ids, so ids shown before a save still address the same events after a load.
+ *
+ * <p>A snapshot is written to a temporary file that then replaces the target, so a failed save
+ * leaves any earlier snapshot intact. It is read through a memory-mapped buffer, decoding the
+ * records in place without copying the file onto the heap. */
+public final class CalendarSnapshot {
+  private static final int MAGIC = 0x43414C53;
+  private static final int VERSION = 1;
+  private static final byte CALENDAR = 1;
+  private static final byte SINGLE = 2;
+  private static final byte SERIES = 3;
+  private static final int NULL_STRING = -1;
+
+  private CalendarSnapshot() {
+  }
+
+  /** Writes the calendars to a snapshot at the given path, replacing any file there. */
+  public static void save(Collection<Calendar> calendars, Path path) throws IOException {
+    Path absolute = path.toAbsolutePath();
+    Path temporary = Files.createTempFile(
+        absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+        new Writer(channel).write(calendars);
+      }
+      Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /** Reads the calendars of the snapshot at the given path, in the order they were saved. */
+  public static List<Calendar> load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot is too large to map: " + path);
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      try {
+        return new Reader(buffer, path).read();
+      } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+          | DateTimeException e) {
+        throw new IOException("Corrupt calendar snapshot: " + path, e);
+      }
+    }
+  }
+
+  /** Encodes calendars record by record into a buffer that is flushed to the file as it fills,
+   * collecting the dictionary as strings come up and the checksum as bytes go out. */
+  private static final class Writer {
+    private final FileChannel channel;
+    private final CRC32 checksum = new CRC32();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private ByteBuffer out = ByteBuffer.allocate(1 << 16);
+    private long flushed;
+
+    private Writer(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    private void write(Collection<Calendar> calendars) throws IOException {
+      reserve(8);
+      out.putInt(MAGIC);
+      out.putInt(VERSION);
+      for (Calendar calendar : calendars) {
+        writeCalendar(calendar);
+        Iterator<Event> singles = calendar.singleEvents();
+        while (singles.hasNext()) {
+          Event event = singles.next();
+          writeSingle(event, calendar.startOf(event), calendar.endOf(event));
+        }
+        for (RecurringEvent recurring : calendar.getSeries()) {
+          writeSeries(recurring);
+        }
+      }
+      long dictionary = flushed + out.position();
+      reserve(4);
+      out.putInt(strings.size());
+      for (String string : strings) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        reserve(4 + bytes.length);
+        out.putInt(bytes.length);
+        out.put(bytes);
+      }
+      reserve(8);
+      out.putLong(dictionary);
+      flush();
+      out.putInt((int) checksum.getValue());
+      flush();
+    }
+
+    /** Makes room in the buffer for the given number of bytes, flushing or growing it. */
+    private void reserve(int bytes) throws IOException {
+      if (out.remaining() < bytes) {
+        flush();
+        if (out.capacity() < bytes) {
+          out = ByteBuffer.allocate(bytes);
+        }
+      }
+    }
+
+    /** Writes the buffered bytes to the file and adds them to the checksum. */
+    private void flush() throws IOException {
+      out.flip();
+      checksum.update(out.duplicate());
+      flushed += out.remaining();
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+      out.clear();
+    }
+
+    private void writeCalendar(Calendar calendar) throws IOException {
+      reserve(4 + 1 + 4 + 4 + 1 + 8);
+      out.putInt(1 + 4 + 4 + 1 + 8);
+      out.put(CALENDAR);
+      out.putInt(intern(calendar.getName()));
+      out.putInt(intern(calendar.getTimezone().getId()));
+      out.put((byte) calendar.getStorageMode().ordinal());
+      out.putLong(calendar.getNextId());
+    }
+
+    private void writeSingle(Event event, long start, long end) throws IOException {
+      reserve(4 + 1 + 8 + 8 + 8 + 13);
+      out.putInt(1 + 8 + 8 + 8 + 13);
+      out.put(SINGLE);
+      out.putLong(event.getId());
+      out.putLong(start);
+      out.putLong(end);
+      writeDetails(event);
+    }
+
+    private void writeSeries(RecurringEvent recurring) throws IOException {
+      Set<LocalDate> excluded = recurring.getExcludedDates();
+      int length = 1 + 8 + 8 + 8 + 8 + 1 + 8 + 8 + 13 + 4 + 8 * excluded.size();
+      reserve(4 + length);
+      out.putInt(length);
+      out.put(SERIES);
+      out.putLong(recurring.getId());
+      out.putLong(recurring.getIdAnchor().toEpochDay());
+      out.putLong(TimeKeys.toMinutes(recurring.getStart()));
+      out.putLong(TimeKeys.toMinutes(recurring.getEnd()));
+      int mask = 0;
+      for (DayOfWeek day : recurring.getWeekdays()) {
+        mask |= 1 << (day.getValue() - 1);
+      }
+      out.put((byte) mask);
+      out.putLong(recurring.getFirstDate().toEpochDay());
+      out.putLong(recurring.getLastDate().toEpochDay());
+      writeDetails(recurring);
+      out.putInt(excluded.size());
+      for (LocalDate date : excluded) {
+        out.putLong(date.toEpochDay());
+      }
+    }
+
+    /** Writes the name, description and location indexes and the visibility of an event, 13
+     * bytes in all. */
+    private void writeDetails(Event event) {
+      out.putInt(intern(event.getName()));
+      out.putInt(intern(event.getDescription()));
+      out.putInt(intern(event.getLocation()));
+      out.put((byte) (event.isPublic() ? 1 : 0));
+    }
+
+    private int intern(String string) {
+      if (string == null) {
+        return NULL_STRING;
+      }
+      Integer id = stringIds.get(string);
+      if (id == null) {
+        id = strings.size();
+        stringIds.put(string, id);
+        strings.add(string);
+      }
+      return id;
+    }
+  }
+
+  /** Decodes a mapped snapshot. The single events of a calendar are buffered and added in one
+   * batch, and consecutive events with the same details share one record. */
+  private static final class Reader {
+    private final ByteBuffer buffer;
+    private final Path path;
+    private String[] strings;
+    private int lastName = NULL_STRING;
+    private int lastDescription = NULL_STRING;
+    private int lastLocation = NULL_STRING;
+    private boolean lastPublic;
+    private EventDetails lastDetails;
+    private EventDetails[] details;
+    private long[] ids;
+    private long[] starts;
+    private long[] ends;
+    private int singles;
+
+    private Reader(ByteBuffer buffer, Path path) {
+      this.buffer = buffer;
+      this.path = path;
+    }
+
+    private List<Calendar> read() throws IOException {
+      if (buffer.limit() < 24 || buffer.getInt(0) != MAGIC) {
+        throw new IOException("Not a calendar snapshot: " + path);
+      }
+      if (buffer.getInt(4) != VERSION) {
+        throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + ": " + path);
+      }
+      int trailer = buffer.limit() - 12;
+      CRC32 checksum = new CRC32();
+      checksum.update(buffer.duplicate().limit(trailer + 8));
+      long dictionary = buffer.getLong(trailer);
+      if ((int) checksum.getValue() != buffer.getInt(trailer + 8)
+          || dictionary < 8 || dictionary > trailer) {
+        throw new IOException("Corrupt calendar snapshot: " + path);
+      }
+      readDictionary((int) dictionary);
+      // No calendar holds more single events than fit before the dictionary.
+      int capacity = (int) (dictionary / (4 + 1 + 8 + 8 + 8 + 13));
+      details = new EventDetails[capacity];
+      ids = new long[capacity];
+      starts = new long[capacity];
+      ends = new long[capacity];
+      List<Calendar> calendars = new ArrayList<>();
+      Calendar current = null;
+      buffer.position(8);
+      while (buffer.position() < dictionary) {
+        int length = buffer.getInt();
+        if (length < 1) {
+          throw new IOException("Corrupt calendar snapshot: " + path);
+        }
+        int end = buffer.position() + length;
+        byte tag = buffer.get();
+        if (tag != SINGLE) {
+          flushSingles(current);
+        }
+        if (tag == CALENDAR) {
+          String name = string(buffer.getInt());
+          ZoneId zone = ZoneId.of(string(buffer.getInt()));
+          StorageMode mode = StorageMode.values()[buffer.get()];
+          current = new Calendar(name, zone, mode);
+          current.restoreNextId(buffer.getLong());
+          calendars.add(current);
+        } else if (current == null) {
+          throw new IOException("Corrupt calendar snapshot: " + path);
+        } else if (tag == SINGLE) {
+          readSingle();
+        } else if (tag == SERIES) {
+          current.restoreSeries(readSeries());
+        }
+        buffer.position(end);
+      }
+      flushSingles(current);
+      return calendars;
+    }
+
+    /** Buffers a single event, to be added with the rest of its calendar's single events. */
+    private void readSingle() {
+      ids[singles] = buffer.getLong();
+      starts[singles] = buffer.getLong();
+      ends[singles] = buffer.getLong();
+      details[singles] = readDetails();
+      singles++;
+    }
+
+    /** Adds the buffered single events to the calendar they were read for. */
+    private void flushSingles(Calendar calendar) {
+      if (singles > 0) {
+        calendar.restoreSingles(details, ids, starts, ends, singles);
+        singles = 0;
+      }
+    }
+
+    private RecurringEvent readSeries() {
+      long id = buffer.getLong();
+      LocalDate idAnchor = LocalDate.ofEpochDay(buffer.getLong());
+      long start = buffer.getLong();
+      long end = buffer.getLong();
+      int mask = buffer.get();
+      Set<DayOfWeek> weekdays = EnumSet.noneOf(DayOfWeek.class);
+      for (DayOfWeek day : DayOfWeek.values()) {
+        if ((mask & 1 << (day.getValue() - 1)) != 0) {
+          weekdays.add(day);
+        }
+      }
+      LocalDate firstDate = LocalDate.ofEpochDay(buffer.getLong());
+      LocalDate lastDate = LocalDate.ofEpochDay(buffer.getLong());
+      EventDetails details = readDetails();
+      int count = buffer.getInt();
+      List<LocalDate> excluded = new ArrayList<>(Math.min(count, buffer.remaining() / 8));
+      for (int i = 0; i < count; i++) {
+        excluded.add(LocalDate.ofEpochDay(buffer.getLong()));
+      }
+      return new RecurringEvent(details, TimeKeys.toDateTime(start), TimeKeys.toDateTime(end),
+          weekdays, firstDate, lastDate, id, idAnchor, excluded);
+    }
+
+    private EventDetails readDetails() {
+      int name = buffer.getInt();
+      int description = buffer.getInt();
+      int location = buffer.getInt();
+      boolean isPublic = buffer.get() != 0;
+      if (lastDetails == null || name != lastName || description != lastDescription
+          || location != lastLocation || isPublic != lastPublic) {
+        lastDetails =
+            new EventDetails(string(name), string(description), string(location), isPublic);
+        lastName = name;
+        lastDescription = description;
+        lastLocation = location;
+        lastPublic = isPublic;
+      }
+      return lastDetails;
+    }
+
+    private void readDictionary(int offset) {
+      buffer.position(offset);
+      int count = buffer.getInt();
+      strings = new String[Math.min(count, buffer.remaining() / 4)];
+      if (strings.length != count) {
+        throw new BufferUnderflowException();
+      }
+      for (int i = 0; i < count; i++) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+          throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+
+    private String string(int id) {
+      return id == NULL_STRING ? null : strings[id];
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package calendar.model;
+
+import calendar.model.event.Event;
+import java.util.Collections;
+import java.util.List;
+
+/** One page of a range query: the events of the page, in order of start and then id, and the
+ * token that resumes the query after the last of them. */
+public class EventPage {
+  private final List<Event> events;
+  private final String resumeToken;
+
+  /** Constructs a page. The token is null when the range holds no further events. */
+  public EventPage(List<Event> events, String resumeToken) {
+    this.events = Collections.unmodifiableList(events);
+    this.resumeToken = resumeToken;
+  }
+
+  /** Returns the events of the page. */
+  public List<Event> getEvents() {
+    return events;
+  }
+
+  /** Returns the token that resumes the query after this page, or null if this is the last. */
+  public String getResumeToken() {
+    return resumeToken;
+  }
+
+  /** Returns true if the query has events beyond this page. */
+  public boolean hasMore() {
+    return resumeToken != null;
+  }
+}
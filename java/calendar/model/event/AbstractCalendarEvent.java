@@ -6,14 +6,14 @@ import java.time.LocalDateTime;
  * including the event's name, time range, description, location, and visibility.
  * It implements the Event interface and subclasses should extend this class
  * to provide additional functionality to specific types of events.
+ * The descriptive fields live in a shared, immutable {@link EventDetails} record that setters
+ * replace rather than modify.
  */
 public abstract class AbstractCalendarEvent implements Event {
-  protected String name;
+  protected EventDetails details;
+  protected long id;
   protected LocalDateTime start;
   protected LocalDateTime end;
-  protected String description;
-  protected String location;
-  protected boolean isPublic;
 
   /** Constructs an AbstractCalendarEvent. */
   public AbstractCalendarEvent(
@@ -23,23 +23,41 @@ public abstract class AbstractCalendarEvent implements Event {
       String description,
       String location,
       boolean isPublic) {
-    this.name = name;
+    this(new EventDetails(name, description, location, isPublic), start, end);
+  }
+
+  /** Constructs an AbstractCalendarEvent that shares an existing details record. */
+  protected AbstractCalendarEvent(EventDetails details, LocalDateTime start, LocalDateTime end) {
+    this.details = details;
     this.start = start;
     this.end = end;
-    this.description = description;
-    this.location = location;
-    this.isPublic = isPublic;
+  }
+
+  /** Returns the shared details record of the event. */
+  public EventDetails getDetails() {
+    return details;
+  }
+
+  /** Returns the id of the event, or 0 if it has not been assigned one. */
+  @Override
+  public long getId() {
+    return id;
+  }
+
+  /** Sets the id of the event. */
+  public void setId(long id) {
+    this.id = id;
   }
 
   /** Returns the event name. */
   @Override
   public String getName() {
-    return name;
+    return details.getName();
   }
 
   /** Sets the event name. */
   public void setName(String name) {
-    this.name = name;
+    details = details.withName(name);
   }
 
   /** Returns the start time. */
@@ -57,33 +75,39 @@ public abstract class AbstractCalendarEvent implements Event {
   /** Returns the event description. */
   @Override
   public String getDescription() {
-    return description;
+    return details.getDescription();
   }
 
   /** Sets the event description. */
   public void setDescription(String description) {
-    this.description = description;
+    details = details.withDescription(description);
   }
 
   /** Returns the event location. */
   @Override
   public String getLocation() {
-    return location;
+    return details.getLocation();
   }
 
   /** Sets the event location. */
   public void setLocation(String location) {
-    this.location = location;
+    details = details.withLocation(location);
   }
 
   /** Returns true if the event is public. */
   @Override
   public boolean isPublic() {
-    return isPublic;
+    return details.isPublic();
   }
 
   /** Sets whether the event is public. */
   public void setIsPublic(boolean isPublic) {
-    this.isPublic = isPublic;
+    details = details.withPublic(isPublic);
+  }
+
+  /** Sets a property by its command name (name, description, location or ispublic). Unknown
+   * properties are ignored. */
+  public void setProperty(String property, String newValue) {
+    details = details.withProperty(property, newValue);
   }
 }
@@ -7,6 +7,9 @@ import java.time.LocalDateTime;
  * for any calendar event implementation, including name,
  * time range, description, location, and visibility */
 public interface Event {
+  /** Returns the id the calendar assigned to the event, or 0 if it has not been added to one. */
+  long getId();
+
   /** Returns the event name. */
   String getName();
 
@@ -0,0 +1,77 @@
+package calendar.model.event;
+
+/** The descriptive part of an event: its name, description, location and visibility.
+ * Instances are immutable, so every occurrence of a series, and every piece a series is split
+ * into, can share one record. Changing a detail produces a new record (copy-on-write) for the
+ * event being edited and leaves the other holders untouched. */
+public final class EventDetails {
+  private final String name;
+  private final String description;
+  private final String location;
+  private final boolean isPublic;
+
+  /** Constructs an EventDetails record. */
+  public EventDetails(String name, String description, String location, boolean isPublic) {
+    this.name = name;
+    this.description = description;
+    this.location = location;
+    this.isPublic = isPublic;
+  }
+
+  /** Returns the event name. */
+  public String getName() {
+    return name;
+  }
+
+  /** Returns the event description. */
+  public String getDescription() {
+    return description;
+  }
+
+  /** Returns the event location. */
+  public String getLocation() {
+    return location;
+  }
+
+  /** Returns true if the event is public. */
+  public boolean isPublic() {
+    return isPublic;
+  }
+
+  /** Returns a copy of this record with a different name. */
+  public EventDetails withName(String name) {
+    return new EventDetails(name, description, location, isPublic);
+  }
+
+  /** Returns a copy of this record with a different description. */
+  public EventDetails withDescription(String description) {
+    return new EventDetails(name, description, location, isPublic);
+  }
+
+  /** Returns a copy of this record with a different location. */
+  public EventDetails withLocation(String location) {
+    return new EventDetails(name, description, location, isPublic);
+  }
+
+  /** Returns a copy of this record with a different visibility. */
+  public EventDetails withPublic(boolean isPublic) {
+    return new EventDetails(name, description, location, isPublic);
+  }
+
+  /** Returns a copy of this record with the property named by its command name (name,
+   * description, location or ispublic) changed. Unknown properties return this record. */
+  public EventDetails withProperty(String property, String newValue) {
+    switch (property.toLowerCase()) {
+      case "name":
+        return withName(newValue);
+      case "description":
+        return withDescription(newValue);
+      case "location":
+        return withLocation(newValue);
+      case "ispublic":
+        return withPublic(Boolean.parseBoolean(newValue));
+      default:
+        return this;
+    }
+  }
+}
@@ -3,20 +3,39 @@ package calendar.model.event;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-/** Represents a recurring event composed of multiple single events. A recurring event is defined by
- * either a fixed number of occurrences or an end date,
- * and repeats on specified days of the week.
- * Each occurrence is stored as a separate SingleEvent instance.
+/** Represents a recurring event stored as a rule rather than as a list of instances. A recurring
+ * event is defined by either a fixed number of occurrences or an end date, and repeats on
+ * specified days of the week at the time of day given by its start and end.
+ * Occurrences are expanded on demand for the window being queried. Dates whose occurrence was
+ * edited individually are excluded from the rule and stored as separate events.
+ * A series is given a block of ids, one for each day of its span, so every occurrence has an id
+ * that survives slicing and shifting of the series.
  */
 public class RecurringEvent extends AbstractCalendarEvent {
   private final Set<DayOfWeek> weekdays;
-  private final int occurrences;
-  private final LocalDateTime until;
-  private List<SingleEvent> eventInstances;
+  private final int weekdayMask;
+  private final LocalTime startTime;
+  private final LocalTime endTime;
+  private final LocalDate firstDate;
+  private final LocalDate lastDate;
+  private final Set<LocalDate> excludedDates = new HashSet<>();
+  private LocalDate idAnchor;
 
   /** Constructs a recurring event using an occurrences count. */
   public RecurringEvent(
@@ -29,10 +48,12 @@ public class RecurringEvent extends AbstractCalendarEvent {
       Set<DayOfWeek> weekdays,
       int occurrences) {
     super(name, start, end, description, location, isPublic);
-    this.weekdays = weekdays;
-    this.occurrences = occurrences;
-    this.until = null;
-    generateEventInstances();
+    this.weekdays = copyOf(weekdays);
+    this.weekdayMask = maskOf(this.weekdays);
+    this.startTime = start.toLocalTime();
+    this.endTime = end.toLocalTime();
+    this.firstDate = occurrences > 0 ? nextMatch(start.toLocalDate()) : null;
+    this.lastDate = firstDate == null ? null : nthMatch(firstDate, occurrences);
   }
 
   /** Constructs a recurring event using an until date. */
@@ -46,52 +67,400 @@ public class RecurringEvent extends AbstractCalendarEvent {
       Set<DayOfWeek> weekdays,
       LocalDateTime until) {
     super(name, start, end, description, location, isPublic);
-    this.weekdays = weekdays;
-    this.until = until;
-    this.occurrences = 0;
-    generateEventInstances();
-  }
-
-  /** Generates instances for the recurring event. */
-  private void generateEventInstances() {
-    eventInstances = new ArrayList<>();
-    LocalDate currentDate = start.toLocalDate();
-    int count = 0;
-    if (until == null) {
-      if (occurrences <= 0) {
-        return;
+    this.weekdays = copyOf(weekdays);
+    this.weekdayMask = maskOf(this.weekdays);
+    this.startTime = start.toLocalTime();
+    this.endTime = end.toLocalTime();
+    // The start date is always considered, even when it falls after the until date.
+    LocalDate startDate = start.toLocalDate();
+    LocalDate untilDate = until.toLocalDate();
+    LocalDate limit = untilDate.isBefore(startDate) ? startDate : untilDate;
+    LocalDate first = nextMatch(startDate);
+    this.firstDate = first != null && !first.isAfter(limit) ? first : null;
+    this.lastDate = firstDate == null ? null : previousMatch(limit);
+  }
+
+  /** Constructs the part of an existing series that falls between two dates, inclusive. */
+  private RecurringEvent(RecurringEvent source, LocalDate from, LocalDate to) {
+    super(
+        source.details,
+        LocalDateTime.of(from, source.startTime),
+        LocalDateTime.of(from, source.endTime));
+    this.weekdays = source.weekdays;
+    this.weekdayMask = source.weekdayMask;
+    this.startTime = source.startTime;
+    this.endTime = source.endTime;
+    LocalDate first = nextMatch(from);
+    LocalDate last = previousMatch(to);
+    boolean empty = first == null || first.isAfter(to);
+    this.firstDate = empty ? null : first;
+    this.lastDate = empty ? null : last;
+    this.id = source.id;
+    this.idAnchor = source.idAnchor;
+    for (LocalDate date : source.excludedDates) {
+      if (!date.isBefore(from) && !date.isAfter(to)) {
+        excludedDates.add(date);
       }
-      while (true) {
-        if (weekdays.contains(currentDate.getDayOfWeek())) {
-          LocalDateTime instanceStart = LocalDateTime.of(currentDate, start.toLocalTime());
-          LocalDateTime instanceEnd = LocalDateTime.of(currentDate, end.toLocalTime());
-          eventInstances.add(
-              new SingleEvent(name, instanceStart, instanceEnd, description, location, isPublic));
-          count++;
-          if (count >= occurrences) {
-            break;
+    }
+  }
+
+  /** Constructs a copy of a series moved by a number of minutes that shifts every occurrence by
+   * the same number of days. */
+  private RecurringEvent(RecurringEvent source, long minutes, int days) {
+    super(source.details, source.start.plusMinutes(minutes), source.end.plusMinutes(minutes));
+    Set<DayOfWeek> moved = EnumSet.noneOf(DayOfWeek.class);
+    for (DayOfWeek day : source.weekdays) {
+      moved.add(day.plus(days));
+    }
+    this.weekdays = moved;
+    this.weekdayMask = maskOf(moved);
+    this.startTime = source.startTime.plusMinutes(minutes);
+    this.endTime = source.endTime.plusMinutes(minutes);
+    this.firstDate = source.firstDate == null ? null : source.firstDate.plusDays(days);
+    this.lastDate = source.lastDate == null ? null : source.lastDate.plusDays(days);
+    this.id = source.id;
+    this.idAnchor = source.idAnchor == null ? null : source.idAnchor.plusDays(days);
+    for (LocalDate date : source.excludedDates) {
+      excludedDates.add(date.plusDays(days));
+    }
+  }
+
+  /** Constructs a series from the saved state of one, as read back from a snapshot: its rule,
+   * its span of occurrence dates, its block of ids and the dates excluded from it. */
+  public RecurringEvent(
+      EventDetails details,
+      LocalDateTime start,
+      LocalDateTime end,
+      Set<DayOfWeek> weekdays,
+      LocalDate firstDate,
+      LocalDate lastDate,
+      long id,
+      LocalDate idAnchor,
+      Collection<LocalDate> excludedDates) {
+    super(details, start, end);
+    this.weekdays = copyOf(weekdays);
+    this.weekdayMask = maskOf(this.weekdays);
+    this.startTime = start.toLocalTime();
+    this.endTime = end.toLocalTime();
+    this.firstDate = firstDate;
+    this.lastDate = lastDate;
+    this.id = id;
+    this.idAnchor = idAnchor;
+    this.excludedDates.addAll(excludedDates);
+  }
+
+  private static Set<DayOfWeek> copyOf(Set<DayOfWeek> weekdays) {
+    return weekdays.isEmpty() ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(weekdays);
+  }
+
+  /** Returns a bit mask of the weekdays, with Monday in bit 0 and Sunday in bit 6. */
+  private static int maskOf(Set<DayOfWeek> weekdays) {
+    int mask = 0;
+    for (DayOfWeek day : weekdays) {
+      mask |= 1 << (day.getValue() - 1);
+    }
+    return mask;
+  }
+
+  /** Returns the first date on or after the given date that falls on a repeat weekday. */
+  private LocalDate nextMatch(LocalDate date) {
+    if (weekdayMask == 0) {
+      return null;
+    }
+    int day = date.getDayOfWeek().getValue() - 1;
+    // Rotate the mask so that bit k stands for the weekday k days after the given date.
+    int rotated = ((weekdayMask >>> day) | (weekdayMask << (7 - day))) & 0x7F;
+    return date.plusDays(Integer.numberOfTrailingZeros(rotated));
+  }
+
+  /** Returns the last date on or before the given date that falls on a repeat weekday. */
+  private LocalDate previousMatch(LocalDate date) {
+    if (weekdayMask == 0) {
+      return null;
+    }
+    int day = date.getDayOfWeek().getValue() - 1;
+    // Rotate the mask so that bit 6 - k stands for the weekday k days before the given date.
+    int rotated = ((weekdayMask << (6 - day)) | (weekdayMask >>> (day + 1))) & 0x7F;
+    return date.minusDays(Integer.numberOfLeadingZeros(rotated) - 25);
+  }
+
+  /** Returns the date of the n-th repeat weekday counting the matching date first as one. */
+  private LocalDate nthMatch(LocalDate first, int n) {
+    int perWeek = Integer.bitCount(weekdayMask);
+    LocalDate current = first.plusWeeks((n - 1) / perWeek);
+    for (int count = (n - 1) % perWeek; count > 0; count--) {
+      current = nextMatch(current.plusDays(1));
+    }
+    return current;
+  }
+
+  /** Returns the days of the week on which the event repeats. */
+  public Set<DayOfWeek> getWeekdays() {
+    return Collections.unmodifiableSet(weekdays);
+  }
+
+  /** Returns the dates excluded from the rule. */
+  public Set<LocalDate> getExcludedDates() {
+    return Collections.unmodifiableSet(excludedDates);
+  }
+
+  /** Returns the date of the first occurrence, or null if the series has none. */
+  public LocalDate getFirstDate() {
+    return firstDate;
+  }
+
+  /** Returns the date of the last occurrence, or null if the series has none. */
+  public LocalDate getLastDate() {
+    return lastDate;
+  }
+
+  /** Sets the id of the first day of the series. Each later day of its span takes the next id,
+   * so the block holds {@link #idSpan()} ids. */
+  @Override
+  public void setId(long id) {
+    this.id = id;
+    this.idAnchor = firstDate;
+  }
+
+  /** Returns the date whose occurrence takes the id of the series itself, or null if the series
+   * has no ids. */
+  public LocalDate getIdAnchor() {
+    return idAnchor;
+  }
+
+  /** Returns the number of days from the first to the last occurrence, inclusive. */
+  public long idSpan() {
+    return firstDate == null ? 0 : ChronoUnit.DAYS.between(firstDate, lastDate) + 1;
+  }
+
+  /** Returns the id of the occurrence on the given date, or 0 if the series has no ids. */
+  public long idOf(LocalDate date) {
+    return id == 0 ? 0 : id + ChronoUnit.DAYS.between(idAnchor, date);
+  }
+
+  /** Returns the date whose occurrence has the given id. */
+  public LocalDate dateOf(long occurrenceId) {
+    return idAnchor.plusDays(occurrenceId - id);
+  }
+
+  /** Returns true if the rule produces no occurrences. */
+  public boolean isEmpty() {
+    return firstDate == null;
+  }
+
+  /** Returns the start of the first occurrence. */
+  public LocalDateTime getFirstStart() {
+    return LocalDateTime.of(firstDate, startTime);
+  }
+
+  /** Returns the start of the last occurrence. */
+  public LocalDateTime getLastStart() {
+    return LocalDateTime.of(lastDate, startTime);
+  }
+
+  /** Returns the end of the last occurrence. */
+  public LocalDateTime getLastEnd() {
+    return LocalDateTime.of(lastDate, endTime);
+  }
+
+  /** Returns true if the series has a (non-excluded) occurrence on the given date. */
+  public boolean occursOn(LocalDate date) {
+    return firstDate != null
+        && !date.isBefore(firstDate)
+        && !date.isAfter(lastDate)
+        && weekdays.contains(date.getDayOfWeek())
+        && !excludedDates.contains(date);
+  }
+
+  /** Returns the occurrence on the given date, or null if there is none. */
+  public Event getOccurrenceOn(LocalDate date) {
+    return occursOn(date) ? new Occurrence(date) : null;
+  }
+
+  /** Returns the occurrences overlapping the closed range [from, to], in start order. */
+  public List<Event> getOccurrencesBetween(LocalDateTime from, LocalDateTime to) {
+    List<Event> result = new ArrayList<>();
+    Spliterator<Event> occurrences = spliterator(from.toLocalDate(), to.toLocalDate());
+    occurrences.forEachRemaining(
+        occurrence -> {
+          if (!occurrence.getStart().isAfter(to) && !occurrence.getEnd().isBefore(from)) {
+            result.add(occurrence);
           }
-        }
-        currentDate = currentDate.plusDays(1);
+        });
+    return result;
+  }
+
+  /** Returns true if any occurrence overlaps the closed range [from, to]. */
+  public boolean overlaps(LocalDateTime from, LocalDateTime to) {
+    Iterator<Event> occurrences = occurrencesFrom(from.toLocalDate());
+    while (occurrences.hasNext()) {
+      Event occurrence = occurrences.next();
+      if (occurrence.getStart().isAfter(to)) {
+        return false;
       }
-    } else {
-      while (true) {
-        if (weekdays.contains(currentDate.getDayOfWeek())) {
-          LocalDateTime instanceStart = LocalDateTime.of(currentDate, start.toLocalTime());
-          LocalDateTime instanceEnd = LocalDateTime.of(currentDate, end.toLocalTime());
-          eventInstances.add(
-              new SingleEvent(name, instanceStart, instanceEnd, description, location, isPublic));
-        }
-        currentDate = currentDate.plusDays(1);
-        if (currentDate.atStartOfDay().isAfter(until)) {
-          break;
+      if (!occurrence.getEnd().isBefore(from)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns a lazy iterator over the occurrences on or after the given date. The first
+   * occurrence is found directly from the weekday set, without walking from the series start. */
+  public Iterator<Event> occurrencesFrom(LocalDate from) {
+    return Spliterators.iterator(spliterator(from, lastDate == null ? from : lastDate));
+  }
+
+  /** Returns a spliterator over the occurrences between the two dates, inclusive, in order. */
+  public Spliterator<Event> spliterator(LocalDate from, LocalDate to) {
+    if (firstDate == null) {
+      return new OccurrenceSpliterator(null, to);
+    }
+    LocalDate start = from.isBefore(firstDate) ? firstDate : from;
+    LocalDate end = to.isAfter(lastDate) ? lastDate : to;
+    return new OccurrenceSpliterator(nextMatch(start), end);
+  }
+
+  /** Returns a sequential stream of the occurrences between the two dates, inclusive. */
+  public Stream<Event> occurrences(LocalDate from, LocalDate to) {
+    return StreamSupport.stream(spliterator(from, to), false);
+  }
+
+  /** Returns the number of occurrences the series currently produces. */
+  public int size() {
+    if (firstDate == null) {
+      return 0;
+    }
+    long days = ChronoUnit.DAYS.between(firstDate, lastDate) + 1;
+    long count = (days / 7) * Integer.bitCount(weekdayMask);
+    // Count the matching weekdays in the trailing partial week, which begins on firstDate's day.
+    int day = firstDate.getDayOfWeek().getValue() - 1;
+    int rotated = ((weekdayMask >>> day) | (weekdayMask << (7 - day))) & 0x7F;
+    count += Integer.bitCount(rotated & ((1 << (days % 7)) - 1));
+    return (int) count - excludedDates.size();
+  }
+
+  /** Removes the occurrence on the given date from the rule, typically because it has been
+   * materialized as a separate event. */
+  public void exclude(LocalDate date) {
+    if (occursOn(date)) {
+      excludedDates.add(date);
+    }
+  }
+
+  /** Returns the part of this series between the two dates, inclusive. The slice shares this
+   * series' details record until either of them is edited. */
+  public RecurringEvent slice(LocalDate from, LocalDate to) {
+    return new RecurringEvent(this, from, to);
+  }
+
+  /** Returns the part of this series between the two dates, inclusive, with every occurrence
+   * moved by the given number of minutes, or null if the move would make the occurrences cross
+   * midnight and so no longer fit a weekly rule. */
+  public RecurringEvent shifted(LocalDate from, LocalDate to, long minutes) {
+    long startDays = Math.floorDiv(startTime.toSecondOfDay() / 60 + minutes, 1440);
+    long endDays = Math.floorDiv(endTime.toSecondOfDay() / 60 + minutes, 1440);
+    if (startDays != endDays) {
+      return null;
+    }
+    return new RecurringEvent(slice(from, to), minutes, (int) startDays);
+  }
+
+  /** Walks matching dates by jumping straight from one repeat weekday to the next. Splits
+   * divide the remaining date range in half. */
+  private final class OccurrenceSpliterator implements Spliterator<Event> {
+    private LocalDate next;
+    private final LocalDate end;
+
+    private OccurrenceSpliterator(LocalDate next, LocalDate end) {
+      this.next = next;
+      this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Event> action) {
+      while (next != null && !next.isAfter(end)) {
+        LocalDate date = next;
+        next = nextMatch(date.plusDays(1));
+        if (!excludedDates.contains(date)) {
+          action.accept(new Occurrence(date));
+          return true;
         }
       }
+      return false;
+    }
+
+    @Override
+    public Spliterator<Event> trySplit() {
+      if (next == null) {
+        return null;
+      }
+      long days = ChronoUnit.DAYS.between(next, end);
+      if (days < 14) {
+        return null;
+      }
+      LocalDate middle = next.plusDays(days / 2);
+      Spliterator<Event> prefix = new OccurrenceSpliterator(next, middle.minusDays(1));
+      next = nextMatch(middle);
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      if (next == null || next.isAfter(end)) {
+        return 0;
+      }
+      long days = ChronoUnit.DAYS.between(next, end) + 1;
+      return (days * Integer.bitCount(weekdayMask) + 6) / 7;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | DISTINCT | NONNULL;
     }
   }
 
-  /** Returns the list of single event instances. */
-  public List<SingleEvent> getEventInstances() {
-    return eventInstances;
+  /** A lightweight view of one occurrence that reads its details from the series. */
+  private final class Occurrence implements Event {
+    private final LocalDate date;
+
+    private Occurrence(LocalDate date) {
+      this.date = date;
+    }
+
+    @Override
+    public long getId() {
+      return idOf(date);
+    }
+
+    @Override
+    public String getName() {
+      return details.getName();
+    }
+
+    @Override
+    public LocalDateTime getStart() {
+      return LocalDateTime.of(date, startTime);
+    }
+
+    @Override
+    public LocalDateTime getEnd() {
+      return LocalDateTime.of(date, endTime);
+    }
+
+    @Override
+    public String getDescription() {
+      return details.getDescription();
+    }
+
+    @Override
+    public String getLocation() {
+      return details.getLocation();
+    }
+
+    @Override
+    public boolean isPublic() {
+      return details.isPublic();
+    }
   }
 }
@@ -14,4 +14,10 @@ public class SingleEvent extends AbstractCalendarEvent {
       boolean isPublic) {
     super(name, start, end, description, location, isPublic);
   }
+
+  /** Constructs a SingleEvent that shares an existing details record, such as the record of the
+   * series an occurrence was detached from. */
+  public SingleEvent(EventDetails details, LocalDateTime start, LocalDateTime end) {
+    super(details, start, end);
+  }
 }
@@ -0,0 +1,360 @@
+package calendar.model.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/** An augmented AVL tree of closed intervals [start, end] keyed on epoch minutes.
+ * Entries are ordered by start, then end, then insertion order, and every node records the
+ * largest end in its subtree. Overlap and stabbing queries use that value to prune whole
+ * subtrees, so they run in O(log n + k) and report results sorted by start. */
+public class IntervalTree<T> {
+  private Node<T> root;
+  private int size;
+  private long nextSeq;
+  private boolean removed;
+
+  /** A tree node holding one interval and its payload. */
+  private static final class Node<T> {
+    private final long start;
+    private final long end;
+    private final long seq;
+    private final T value;
+    private long maxEnd;
+    private int height;
+    private Node<T> left;
+    private Node<T> right;
+
+    private Node(long start, long end, long seq, T value) {
+      this.start = start;
+      this.end = end;
+      this.seq = seq;
+      this.value = value;
+      this.maxEnd = end;
+      this.height = 1;
+    }
+  }
+
+  /** Returns the number of intervals in the tree. */
+  public int size() {
+    return size;
+  }
+
+  /** Inserts the interval [start, end] with the given payload. */
+  public void insert(long start, long end, T value) {
+    if (end < start) {
+      throw new IllegalArgumentException("Interval end is before its start.");
+    }
+    root = insert(root, new Node<>(start, end, nextSeq++, value));
+    size++;
+  }
+
+  /** Inserts a batch of intervals, the i-th spanning [starts[i], ends[i]] with the i-th payload.
+   * The tree is rebuilt balanced from the sorted batch merged with its in-order nodes, in one
+   * pass instead of rebalancing after every insertion, unless the batch is so small next to the
+   * tree that inserting it node by node costs less; the sort is close to linear when the batch
+   * is nearly in order already. */
+  public void insertAll(long[] starts, long[] ends, List<? extends T> values) {
+    int count = values.size();
+    for (int i = 0; i < count; i++) {
+      if (ends[i] < starts[i]) {
+        throw new IllegalArgumentException("Interval end is before its start.");
+      }
+    }
+    // Each insertion walks and rebalances about log2(size) nodes; a rebuild touches every node.
+    if (size > (long) count * (64 - Long.numberOfLeadingZeros(size))) {
+      for (int i = 0; i < count; i++) {
+        insert(starts[i], ends[i], values.get(i));
+      }
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    Node<T>[] added = (Node<T>[]) new Node<?>[count];
+    for (int i = 0; i < count; i++) {
+      added[i] = new Node<>(starts[i], ends[i], nextSeq++, values.get(i));
+    }
+    Arrays.sort(added, IntervalTree::compare);
+    @SuppressWarnings("unchecked")
+    Node<T>[] nodes = (Node<T>[]) new Node<?>[size + count];
+    int existing = collect(root, nodes, 0);
+    // Merge the batch into the in-order nodes from the back, in place.
+    int from = existing - 1;
+    int next = count - 1;
+    for (int to = existing + count - 1; next >= 0; to--) {
+      nodes[to] = from >= 0 && compare(nodes[from], added[next]) > 0
+          ? nodes[from--]
+          : added[next--];
+    }
+    root = build(nodes, 0, nodes.length - 1);
+    size = nodes.length;
+  }
+
+  /** Stores the nodes under the given one in order from the given index and returns the index
+   * after the last. */
+  private static <T> int collect(Node<T> node, Node<T>[] nodes, int index) {
+    while (node != null) {
+      index = collect(node.left, nodes, index);
+      nodes[index++] = node;
+      node = node.right;
+    }
+    return index;
+  }
+
+  /** Removes the given payload stored under [start, end]. Returns true if it was found. */
+  public boolean remove(long start, long end, T value) {
+    removed = false;
+    root = remove(root, start, end, value);
+    if (removed) {
+      size--;
+    }
+    return removed;
+  }
+
+  /** Returns true if any stored interval overlaps [start, end]. */
+  public boolean overlapsAny(long start, long end) {
+    Node<T> node = root;
+    while (node != null) {
+      if (node.start <= end && node.end >= start) {
+        return true;
+      }
+      // If the left subtree reaches start but holds no overlap, every interval in it starts
+      // after end, and so does everything to the right.
+      if (node.left != null && node.left.maxEnd >= start) {
+        node = node.left;
+      } else {
+        node = node.right;
+      }
+    }
+    return false;
+  }
+
+  /** Returns true if the payload of any interval overlapping [start, end] passes the filter.
+   * Subtrees are pruned as in {@link #forEachOverlapping}, and the search stops at the first
+   * match. */
+  public boolean anyOverlapping(long start, long end, Predicate<? super T> filter) {
+    return anyOverlapping(root, start, end, filter);
+  }
+
+  /** Returns true if any stored interval contains the given point. */
+  public boolean contains(long point) {
+    return overlapsAny(point, point);
+  }
+
+  /** Returns the payloads of all intervals overlapping [start, end], ordered by start. */
+  public List<T> overlapping(long start, long end) {
+    List<T> result = new ArrayList<>();
+    forEachOverlapping(start, end, result::add);
+    return result;
+  }
+
+  /** Applies the action to every interval overlapping [start, end], in start order. */
+  public void forEachOverlapping(long start, long end, Consumer<? super T> action) {
+    forEachOverlapping(root, start, end, action);
+  }
+
+  /** Walks the intervals overlapping [start, end] whose start is at least fromStart, in start
+   * order, until the action returns false. Subtrees starting before fromStart are skipped, so
+   * resuming a walk part way through the range costs O(log n) before the first interval. */
+  public void walkOverlapping(
+      long start, long end, long fromStart, Predicate<? super T> action) {
+    walkOverlapping(root, start, end, fromStart, action);
+  }
+
+  /** Applies the action to every payload in start order. */
+  public void forEach(Consumer<? super T> action) {
+    forEach(root, action);
+  }
+
+  private void forEachOverlapping(Node<T> node, long start, long end, Consumer<? super T> action) {
+    if (node == null || node.maxEnd < start) {
+      return;
+    }
+    forEachOverlapping(node.left, start, end, action);
+    if (node.start > end) {
+      return;
+    }
+    if (node.end >= start) {
+      action.accept(node.value);
+    }
+    forEachOverlapping(node.right, start, end, action);
+  }
+
+  /** Returns false once the walk should stop. */
+  private boolean walkOverlapping(
+      Node<T> node, long start, long end, long fromStart, Predicate<? super T> action) {
+    if (node == null || node.maxEnd < start) {
+      return true;
+    }
+    if (node.start >= fromStart && !walkOverlapping(node.left, start, end, fromStart, action)) {
+      return false;
+    }
+    if (node.start > end) {
+      return false;
+    }
+    if (node.start >= fromStart && node.end >= start && !action.test(node.value)) {
+      return false;
+    }
+    return walkOverlapping(node.right, start, end, fromStart, action);
+  }
+
+  private boolean anyOverlapping(
+      Node<T> node, long start, long end, Predicate<? super T> filter) {
+    if (node == null || node.maxEnd < start) {
+      return false;
+    }
+    if (anyOverlapping(node.left, start, end, filter)) {
+      return true;
+    }
+    if (node.start > end) {
+      return false;
+    }
+    if (node.end >= start && filter.test(node.value)) {
+      return true;
+    }
+    return anyOverlapping(node.right, start, end, filter);
+  }
+
+  private void forEach(Node<T> node, Consumer<? super T> action) {
+    if (node == null) {
+      return;
+    }
+    forEach(node.left, action);
+    action.accept(node.value);
+    forEach(node.right, action);
+  }
+
+  private Node<T> insert(Node<T> node, Node<T> added) {
+    if (node == null) {
+      return added;
+    }
+    if (compare(added, node) < 0) {
+      node.left = insert(node.left, added);
+    } else {
+      node.right = insert(node.right, added);
+    }
+    return rebalance(node);
+  }
+
+  /** Links the sorted nodes between two indexes, inclusive, into a balanced subtree. */
+  private static <T> Node<T> build(Node<T>[] nodes, int from, int to) {
+    if (from > to) {
+      return null;
+    }
+    int middle = (from + to) >>> 1;
+    Node<T> node = nodes[middle];
+    node.left = build(nodes, from, middle - 1);
+    node.right = build(nodes, middle + 1, to);
+    update(node);
+    return node;
+  }
+
+  private Node<T> remove(Node<T> node, long start, long end, T value) {
+    if (node == null) {
+      return null;
+    }
+    int cmp = start != node.start ? Long.compare(start, node.start) : Long.compare(end, node.end);
+    if (cmp < 0) {
+      node.left = remove(node.left, start, end, value);
+    } else if (cmp > 0) {
+      node.right = remove(node.right, start, end, value);
+    } else if (node.value == value) {
+      removed = true;
+      return unlink(node);
+    } else {
+      // Equal intervals are ordered by insertion, so the payload may sit on either side.
+      node.left = remove(node.left, start, end, value);
+      if (!removed) {
+        node.right = remove(node.right, start, end, value);
+      }
+    }
+    return rebalance(node);
+  }
+
+  private Node<T> unlink(Node<T> node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    if (node.right == null) {
+      return node.left;
+    }
+    Node<T> successor = node.right;
+    while (successor.left != null) {
+      successor = successor.left;
+    }
+    successor.right = removeMin(node.right);
+    successor.left = node.left;
+    return rebalance(successor);
+  }
+
+  private Node<T> removeMin(Node<T> node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    node.left = removeMin(node.left);
+    return rebalance(node);
+  }
+
+  private static <T> int compare(Node<T> a, Node<T> b) {
+    if (a.start != b.start) {
+      return Long.compare(a.start, b.start);
+    }
+    if (a.end != b.end) {
+      return Long.compare(a.end, b.end);
+    }
+    return Long.compare(a.seq, b.seq);
+  }
+
+  private static <T> int height(Node<T> node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static <T> void update(Node<T> node) {
+    node.height = 1 + Math.max(height(node.left), height(node.right));
+    long max = node.end;
+    if (node.left != null) {
+      max = Math.max(max, node.left.maxEnd);
+    }
+    if (node.right != null) {
+      max = Math.max(max, node.right.maxEnd);
+    }
+    node.maxEnd = max;
+  }
+
+  private static <T> Node<T> rotateRight(Node<T> node) {
+    Node<T> pivot = node.left;
+    node.left = pivot.right;
+    pivot.right = node;
+    update(node);
+    update(pivot);
+    return pivot;
+  }
+
+  private static <T> Node<T> rotateLeft(Node<T> node) {
+    Node<T> pivot = node.right;
+    node.right = pivot.left;
+    pivot.left = node;
+    update(node);
+    update(pivot);
+    return pivot;
+  }
+
+  private static <T> Node<T> rebalance(Node<T> node) {
+    update(node);
+    int balance = height(node.left) - height(node.right);
+    if (balance > 1) {
+      if (height(node.left.left) < height(node.left.right)) {
+        node.left = rotateLeft(node.left);
+      }
+      return rotateRight(node);
+    }
+    if (balance < -1) {
+      if (height(node.right.right) < height(node.right.left)) {
+        node.right = rotateRight(node.right);
+      }
+      return rotateLeft(node);
+    }
+    return node;
+  }
+}
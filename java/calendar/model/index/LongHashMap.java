@@ -0,0 +1,129 @@
+package calendar.model.index;
+
+import java.util.Arrays;
+
+/** A hash map from non-zero long keys to values that keeps the keys in a primitive array, so a
+ * lookup costs one hash and a short linear probe without boxing the key. Key zero marks a free
+ * slot and cannot be stored. Removal shifts the following entries of the probe run back instead
+ * of leaving markers, so lookups never slow down as entries come and go. */
+public final class LongHashMap<V> {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private Object[] values = new Object[INITIAL_CAPACITY];
+  private int size;
+
+  /** Returns the number of entries. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the value stored under the key, or null if there is none. */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    if (key == 0) {
+      return null;
+    }
+    int mask = keys.length - 1;
+    for (int slot = slotOf(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return (V) values[slot];
+      }
+    }
+    return null;
+  }
+
+  /** Stores a value under a non-zero key, replacing any previous value. */
+  public void put(long key, V value) {
+    if (key == 0) {
+      throw new IllegalArgumentException("Key 0 is reserved.");
+    }
+    if ((size + 1) * 4L > keys.length * 3L) {
+      resize(keys.length * 2);
+    }
+    int mask = keys.length - 1;
+    int slot = slotOf(key, mask);
+    while (keys[slot] != 0 && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    if (keys[slot] == 0) {
+      keys[slot] = key;
+      size++;
+    }
+    values[slot] = value;
+  }
+
+  /** Removes the entry under the key and returns its value, or null if there was none. */
+  @SuppressWarnings("unchecked")
+  public V remove(long key) {
+    if (key == 0) {
+      return null;
+    }
+    int mask = keys.length - 1;
+    int slot = slotOf(key, mask);
+    while (keys[slot] != key) {
+      if (keys[slot] == 0) {
+        return null;
+      }
+      slot = (slot + 1) & mask;
+    }
+    V removed = (V) values[slot];
+    // Move later entries of the run into the hole unless that would put them before their home.
+    int hole = slot;
+    for (int next = (hole + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+      int home = slotOf(keys[next], mask);
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        keys[hole] = keys[next];
+        values[hole] = values[next];
+        hole = next;
+      }
+    }
+    keys[hole] = 0;
+    values[hole] = null;
+    size--;
+    return removed;
+  }
+
+  /** Grows the table ahead of a batch of puts so that it holds the given number of entries
+   * without resizing on the way. */
+  public void ensureCapacity(int entries) {
+    int capacity = keys.length;
+    while (entries * 4L > capacity * 3L) {
+      capacity *= 2;
+    }
+    if (capacity > keys.length) {
+      resize(capacity);
+    }
+  }
+
+  /** Removes every entry. */
+  public void clear() {
+    Arrays.fill(keys, 0);
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  private void resize(int capacity) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new long[capacity];
+    values = new Object[capacity];
+    int mask = capacity - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != 0) {
+        int slot = slotOf(oldKeys[i], mask);
+        while (keys[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  /** Returns the home slot of a key. Sequential ids are spread by a multiplicative hash. */
+  private static int slotOf(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+}
@@ -0,0 +1,60 @@
+package calendar.model.index;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/** Lazily merges several individually sorted iterators into one sorted iteration.
+ * A heap holds the current head of each source, so producing the next element costs
+ * O(log k) for k sources and no source is read further ahead than its head. Elements that
+ * compare equal are returned in the order of their sources. */
+public class MergingIterator<T> implements Iterator<T> {
+  private final PriorityQueue<Head<T>> heads;
+
+  /** The current head of one source together with the rest of that source. */
+  private static final class Head<T> {
+    private final int source;
+    private final Iterator<? extends T> rest;
+    private T value;
+
+    private Head(int source, Iterator<? extends T> rest) {
+      this.source = source;
+      this.rest = rest;
+      this.value = rest.next();
+    }
+  }
+
+  /** Creates a merge of the given sources, each of which must be sorted by the comparator. */
+  public MergingIterator(List<? extends Iterator<? extends T>> sources,
+      Comparator<? super T> comparator) {
+    Comparator<Head<T>> byValue = (a, b) -> comparator.compare(a.value, b.value);
+    this.heads = new PriorityQueue<>(Math.max(1, sources.size()),
+        byValue.thenComparingInt(head -> head.source));
+    for (int i = 0; i < sources.size(); i++) {
+      if (sources.get(i).hasNext()) {
+        heads.add(new Head<>(i, sources.get(i)));
+      }
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return !heads.isEmpty();
+  }
+
+  @Override
+  public T next() {
+    Head<T> head = heads.poll();
+    if (head == null) {
+      throw new NoSuchElementException();
+    }
+    T value = head.value;
+    if (head.rest.hasNext()) {
+      head.value = head.rest.next();
+      heads.add(head);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,101 @@
+package calendar.model.index;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Busy bitmaps at minute resolution, one per day: bit m of a day is set when minute m of that
+ * day is covered by an event. A day takes 23 longs (1440 bits), a point lookup is a hash lookup
+ * plus a bit test, and days can be combined a word at a time with bitwise operations. */
+public class MinuteBitmaps {
+  /** The number of minutes, and so of bits, in a day. */
+  public static final int MINUTES_PER_DAY = 1440;
+  /** The number of longs that hold one day's bits. */
+  public static final int WORDS_PER_DAY = (MINUTES_PER_DAY + 63) / 64;
+
+  private final Map<LocalDate, long[]> days = new HashMap<>();
+
+  /** Marks every minute of the closed range [start, end] as busy. */
+  public void add(LocalDateTime start, LocalDateTime end) {
+    LocalDate date = start.toLocalDate();
+    LocalDate last = end.toLocalDate();
+    for (; !date.isAfter(last); date = date.plusDays(1)) {
+      int from = date.equals(start.toLocalDate()) ? minuteOfDay(start) : 0;
+      int to = date.equals(last) ? minuteOfDay(end) : MINUTES_PER_DAY - 1;
+      setRange(days.computeIfAbsent(date, d -> new long[WORDS_PER_DAY]), from, to);
+    }
+  }
+
+  /** Marks the minutes of a batch of closed ranges as busy, the i-th running from wall-clock
+   * minute key from[i] to to[i], as used by {@link TimeKeys}. A range on the same day as the one
+   * before it reuses that day's bitmap without a lookup, so batches in start order cost few map
+   * lookups and no date-time objects. */
+  public void addAll(long[] from, long[] to, int count) {
+    long day = Long.MIN_VALUE;
+    long[] words = null;
+    for (int i = 0; i < count; i++) {
+      long first = Math.floorDiv(from[i], MINUTES_PER_DAY);
+      long last = Math.floorDiv(to[i], MINUTES_PER_DAY);
+      for (long d = first; d <= last; d++) {
+        if (d != day) {
+          day = d;
+          words = days.computeIfAbsent(LocalDate.ofEpochDay(d), k -> new long[WORDS_PER_DAY]);
+        }
+        int low = d == first ? Math.floorMod(from[i], MINUTES_PER_DAY) : 0;
+        int high = d == last ? Math.floorMod(to[i], MINUTES_PER_DAY) : MINUTES_PER_DAY - 1;
+        setRange(words, low, high);
+      }
+    }
+  }
+
+  /** Returns true if the minute containing the given date-time is busy. */
+  public boolean isSet(LocalDateTime dateTime) {
+    long[] words = days.get(dateTime.toLocalDate());
+    return words != null && isSet(words, minuteOfDay(dateTime));
+  }
+
+  /** Returns a copy of the bitmap for the given day; days without events are all zeros. */
+  public long[] copyOf(LocalDate date) {
+    long[] words = days.get(date);
+    return words == null ? new long[WORDS_PER_DAY] : Arrays.copyOf(words, WORDS_PER_DAY);
+  }
+
+  /** Removes the bitmap of one day, leaving all of its minutes free. */
+  public void remove(LocalDate date) {
+    days.remove(date);
+  }
+
+  /** Removes every bitmap. */
+  public void clear() {
+    days.clear();
+  }
+
+  /** Returns the minute of the day of the given date-time. */
+  public static int minuteOfDay(LocalDateTime dateTime) {
+    return dateTime.getHour() * 60 + dateTime.getMinute();
+  }
+
+  /** Returns true if the given minute is set in a day's bitmap. */
+  public static boolean isSet(long[] words, int minute) {
+    return (words[minute >>> 6] & (1L << minute)) != 0;
+  }
+
+  /** Sets the minutes from and to, inclusive, in a day's bitmap one word at a time. */
+  public static void setRange(long[] words, int from, int to) {
+    int firstWord = from >>> 6;
+    int lastWord = to >>> 6;
+    long firstMask = -1L << from;
+    long lastMask = -1L >>> (63 - (to & 63));
+    if (firstWord == lastWord) {
+      words[firstWord] |= firstMask & lastMask;
+      return;
+    }
+    words[firstWord] |= firstMask;
+    for (int i = firstWord + 1; i < lastWord; i++) {
+      words[i] = -1L;
+    }
+    words[lastWord] |= lastMask;
+  }
+}
@@ -0,0 +1,20 @@
+package calendar.model.index;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/** Converts wall-clock date-times to and from the minute keys used by the event indexes. */
+public final class TimeKeys {
+  private TimeKeys() {
+  }
+
+  /** Returns the number of minutes between the epoch and the given wall-clock date-time. */
+  public static long toMinutes(LocalDateTime dateTime) {
+    return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+  }
+
+  /** Returns the wall-clock date-time for the given minute key. */
+  public static LocalDateTime toDateTime(long minutes) {
+    return LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+  }
+}
@@ -0,0 +1,96 @@
+package calendar.model.index;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/** Converts between the UTC epoch minutes events are stored under and wall-clock date-times in
+ * one time zone. The offset only changes at transitions, so each direction caches its current
+ * offset together with the range it holds for and asks the zone rules again only outside it.
+ * Wall times in a gap or overlap resolve like {@link ZoneRules#getOffset(LocalDateTime)}, that
+ * is, to the offset in force before the transition. The caches make a clock unsafe to share
+ * between threads. */
+public final class ZoneClock {
+  private final ZoneId zone;
+  private final ZoneRules rules;
+  private long localFrom = 1;
+  private long localUntil = 0;
+  private long localOffset;
+  private long epochFrom = 1;
+  private long epochUntil = 0;
+  private long epochOffset;
+
+  /** Creates a clock for the given zone. */
+  public ZoneClock(ZoneId zone) {
+    this.zone = zone;
+    this.rules = zone.getRules();
+  }
+
+  /** Returns the zone of this clock. */
+  public ZoneId getZone() {
+    return zone;
+  }
+
+  /** Returns the epoch minute of the given wall-clock date-time. */
+  public long toEpochMinutes(LocalDateTime dateTime) {
+    return toEpochMinutes(TimeKeys.toMinutes(dateTime));
+  }
+
+  /** Returns the epoch minute of a wall-clock minute key from {@link TimeKeys}. */
+  public long toEpochMinutes(long localMinutes) {
+    if (localMinutes < localFrom || localMinutes >= localUntil) {
+      loadLocal(localMinutes);
+    }
+    return localMinutes - localOffset;
+  }
+
+  /** Returns the wall-clock date-time of the given epoch minute. */
+  public LocalDateTime toLocalDateTime(long epochMinutes) {
+    return TimeKeys.toDateTime(toLocalMinutes(epochMinutes));
+  }
+
+  /** Returns the wall-clock minute key, as used by {@link TimeKeys}, of an epoch minute. */
+  public long toLocalMinutes(long epochMinutes) {
+    if (epochMinutes < epochFrom || epochMinutes >= epochUntil) {
+      loadEpoch(epochMinutes);
+    }
+    return epochMinutes + epochOffset;
+  }
+
+  private void loadEpoch(long epochMinutes) {
+    Instant instant = Instant.ofEpochSecond(epochMinutes * 60);
+    epochOffset = rules.getOffset(instant).getTotalSeconds() / 60;
+    ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+    ZoneOffsetTransition next = rules.nextTransition(instant);
+    epochFrom = previous == null ? Long.MIN_VALUE : minutesOf(previous);
+    epochUntil = next == null ? Long.MAX_VALUE : minutesOf(next);
+  }
+
+  private void loadLocal(long localMinutes) {
+    LocalDateTime wall = TimeKeys.toDateTime(localMinutes);
+    ZoneOffset offset = rules.getOffset(wall);
+    localOffset = offset.getTotalSeconds() / 60;
+    // Away from the gap or overlap around each transition, a wall time has one offset.
+    Instant instant = wall.toInstant(offset);
+    ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+    ZoneOffsetTransition next = rules.nextTransition(instant);
+    long lower = previous == null ? Long.MIN_VALUE : TimeKeys.toMinutes(
+        previous.isGap() ? previous.getDateTimeAfter() : previous.getDateTimeBefore());
+    long upper = next == null ? Long.MAX_VALUE : TimeKeys.toMinutes(
+        next.isGap() ? next.getDateTimeBefore() : next.getDateTimeAfter());
+    if (localMinutes < lower || localMinutes >= upper) {
+      lower = localMinutes;
+      upper = localMinutes + 1;
+    }
+    localFrom = lower;
+    localUntil = upper;
+  }
+
+  /** Returns the epoch minute of a transition. */
+  private static long minutesOf(ZoneOffsetTransition transition) {
+    return Math.floorDiv(transition.getInstant().getEpochSecond(), 60);
+  }
+}
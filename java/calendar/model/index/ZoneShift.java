@@ -0,0 +1,100 @@
+package calendar.model.index;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/** Maps wall-clock minute keys of one time zone to the wall-clock minute keys of the same
+ * instants in another zone. Between offset transitions the mapping is a constant shift, so the
+ * current shift is cached together with the range of source minutes it is valid for, and the
+ * zone rules are consulted again only when a key falls outside that range. Feeding keys in
+ * roughly ascending order therefore costs one rules lookup per transition rather than per key.
+ * Wall times in a gap or overlap of the source zone resolve like {@link ZoneRules#getOffset(
+ * LocalDateTime)}, that is, to the offset in force before the transition. */
+public final class ZoneShift {
+  private final ZoneRules from;
+  private final ZoneRules to;
+  private long validFrom = 1;
+  private long validUntil = 0;
+  private long shift;
+
+  /** Creates a mapping from wall times in one zone to wall times in another. */
+  public ZoneShift(ZoneId from, ZoneId to) {
+    this.from = from.getRules();
+    this.to = to.getRules();
+  }
+
+  /** Returns the minute key in the target zone for the same instant as the given key. */
+  public long apply(long minutes) {
+    load(minutes);
+    return minutes + shift;
+  }
+
+  /** Returns the shift in minutes applied to the given key. */
+  public long shiftAt(long minutes) {
+    load(minutes);
+    return shift;
+  }
+
+  /** Returns the first key after the given one at which the shift may change. */
+  public long validUntil(long minutes) {
+    load(minutes);
+    return validUntil;
+  }
+
+  /** Makes the cached shift cover the given key, recomputing it from the zone rules if needed. */
+  private void load(long minutes) {
+    if (minutes >= validFrom && minutes < validUntil) {
+      return;
+    }
+    LocalDateTime wall = TimeKeys.toDateTime(minutes);
+    ZoneOffset fromOffset = from.getOffset(wall);
+    Instant instant = wall.toInstant(fromOffset);
+    long fromOffsetMinutes = fromOffset.getTotalSeconds() / 60;
+    shift = to.getOffset(instant).getTotalSeconds() / 60 - fromOffsetMinutes;
+    // Outside the gaps and overlaps around them, the source offset is fixed between two source
+    // transitions and the target offset between two target transitions.
+    long lower = Long.MIN_VALUE;
+    long upper = Long.MAX_VALUE;
+    Instant after = instant.plusSeconds(1);
+    ZoneOffsetTransition previous = from.previousTransition(after);
+    if (previous != null) {
+      lower = Math.max(lower, TimeKeys.toMinutes(latest(previous)));
+    }
+    ZoneOffsetTransition next = from.nextTransition(instant);
+    if (next != null) {
+      upper = Math.min(upper, TimeKeys.toMinutes(earliest(next)));
+    }
+    previous = to.previousTransition(after);
+    if (previous != null) {
+      lower = Math.max(lower, minutesOf(previous) + fromOffsetMinutes);
+    }
+    next = to.nextTransition(instant);
+    if (next != null) {
+      upper = Math.min(upper, minutesOf(next) + fromOffsetMinutes);
+    }
+    if (minutes < lower || minutes >= upper) {
+      // The key sits in a gap or overlap, so the shift holds for this minute only.
+      lower = minutes;
+      upper = minutes + 1;
+    }
+    validFrom = lower;
+    validUntil = upper;
+  }
+
+  /** Returns the epoch minute of a transition. */
+  private static long minutesOf(ZoneOffsetTransition transition) {
+    return Math.floorDiv(transition.getInstant().getEpochSecond(), 60);
+  }
+
+  private static LocalDateTime latest(ZoneOffsetTransition transition) {
+    return transition.isGap() ? transition.getDateTimeAfter() : transition.getDateTimeBefore();
+  }
+
+  private static LocalDateTime earliest(ZoneOffsetTransition transition) {
+    return transition.isGap() ? transition.getDateTimeBefore() : transition.getDateTimeAfter();
+  }
+}
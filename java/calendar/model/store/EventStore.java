@@ -0,0 +1,73 @@
+package calendar.model.store;
+
+import calendar.model.event.Event;
+import calendar.model.event.EventDetails;
+import calendar.model.index.ZoneClock;
+import java.util.List;
+
+/** Storage for the single (non-recurring) events of a calendar. Event bounds are kept and
+ * queried as UTC epoch minutes, and every range is closed at both ends. The events handed back
+ * report their times on the wall clock of the store's zone. Query results are ordered by start
+ * time. Removal only marks an event with a tombstone, which queries skip; the space and index
+ * entries of removed events are reclaimed by {@link #compact()}. */
+public interface EventStore {
+  /** Stores an event under the given id, spanning the given epoch minutes, and returns the
+   * instance that later queries will hand back for it. */
+  Event add(Event event, long id, long start, long end);
+
+  /** Stores a batch of events, the i-th with the i-th details record, id and epoch-minute bounds,
+   * and returns the stored instances in the same order. The result is the same as adding them
+   * one at a time, but a store may build its indexes for the whole batch at once. */
+  List<Event> addAll(EventDetails[] details, long[] ids, long[] starts, long[] ends, int count);
+
+  /** Returns the number of stored events, not counting removed ones. */
+  int size();
+
+  /** Marks a stored event as removed. Removing an event twice has no further effect. */
+  void remove(Event event);
+
+  /** Returns the number of removed events whose space has not been reclaimed yet. */
+  int tombstones();
+
+  /** Reclaims the space of removed events and drops them from the indexes. Instances handed out
+   * before compaction may no longer be valid afterwards. */
+  void compact();
+
+  /** Returns true if any stored event overlaps [start, end]. */
+  boolean overlapsAny(long start, long end);
+
+  /** Returns the stored events overlapping [start, end]. */
+  List<Event> overlapping(long start, long end);
+
+  /** Returns the bounds of the stored events overlapping [start, end] as consecutive start and
+   * end pairs in one array, ordered by start. */
+  long[] boundsOverlapping(long start, long end);
+
+  /** Returns at most limit stored events overlapping [start, end] that come after the given
+   * start and id in order of start and then id, ordered that way. Passing the start and id of
+   * the last event of one call to the next pages through the range with bounded memory. */
+  List<Event> overlappingAfter(long start, long end, long afterStart, long afterId, int limit);
+
+  /** Returns the start, in epoch minutes, of a stored event. */
+  long startOf(Event event);
+
+  /** Returns the end, in epoch minutes, of a stored event. */
+  long endOf(Event event);
+
+  /** Returns the stored events whose start lies in [from, to]. */
+  List<Event> startingBetween(long from, long to);
+
+  /** Returns the starts, in epoch minutes, of the stored events whose start lies in [from, to],
+   * in no particular order. */
+  long[] startsBetween(long from, long to);
+
+  /** Returns the stored events with the given name whose start lies in [from, to]. */
+  List<Event> named(String name, long from, long to);
+
+  /** Sets the clock that turns stored instants into wall-clock times. Stored instants are left
+   * unchanged. */
+  void setClock(ZoneClock clock);
+
+  /** Updates a property (name, description, location or ispublic) of a stored event. */
+  void setProperty(Event event, String property, String newValue);
+}
@@ -0,0 +1,302 @@
+package calendar.model.store;
+
+import calendar.model.event.AbstractCalendarEvent;
+import calendar.model.event.Event;
+import calendar.model.event.EventDetails;
+import calendar.model.index.IntervalTree;
+import calendar.model.index.ZoneClock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/** Keeps compact entries, holding a shared details record and the bounds in epoch minutes, in
+ * an interval tree for range, date, busy and conflict queries and in a name map ordered by start
+ * for name-based edits. Changing the clock only changes how entries report their times. Removed
+ * entries are flagged and queued, and compaction unlinks just the queued entries from both
+ * indexes. A batch added at once is linked into the tree in one pass, and unless it is small
+ * next to the store the name index, which costs several objects per entry, is then left to be
+ * rebuilt by the first name lookup. */
+public class IndexedEventStore implements EventStore {
+  private static final Comparator<Entry> BY_START_AND_ID =
+      Comparator.<Entry>comparingLong(entry -> entry.start).thenComparingLong(entry -> entry.id);
+
+  private final IntervalTree<Entry> events = new IntervalTree<>();
+  private Map<String, NavigableMap<Long, List<Entry>>> eventsByName = new HashMap<>();
+  private final List<Entry> removed = new ArrayList<>();
+  private ZoneClock clock;
+
+  /** Creates an empty store that reports times on the given clock. */
+  public IndexedEventStore(ZoneClock clock) {
+    this.clock = clock;
+  }
+
+  @Override
+  public Event add(Event event, long id, long start, long end) {
+    EventDetails details = event instanceof AbstractCalendarEvent
+        ? ((AbstractCalendarEvent) event).getDetails()
+        : new EventDetails(
+            event.getName(), event.getDescription(), event.getLocation(), event.isPublic());
+    Entry entry = new Entry(id, details, start, end);
+    events.insert(start, end, entry);
+    if (eventsByName != null) {
+      indexName(entry);
+    }
+    return entry;
+  }
+
+  @Override
+  public List<Event> addAll(
+      EventDetails[] details, long[] ids, long[] starts, long[] ends, int count) {
+    List<Entry> entries = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      entries.add(new Entry(ids[i], details[i], starts[i], ends[i]));
+    }
+    // A batch that is small next to the store is indexed by name as it goes; a large one drops
+    // the index, to be rebuilt once by the first lookup.
+    if (eventsByName != null && count * 4L < events.size()) {
+      entries.forEach(this::indexName);
+    } else {
+      eventsByName = null;
+    }
+    events.insertAll(starts, ends, entries);
+    return Collections.unmodifiableList(entries);
+  }
+
+  @Override
+  public int size() {
+    return events.size() - removed.size();
+  }
+
+  @Override
+  public void remove(Event event) {
+    Entry entry = (Entry) event;
+    if (!entry.removed) {
+      entry.removed = true;
+      removed.add(entry);
+    }
+  }
+
+  @Override
+  public int tombstones() {
+    return removed.size();
+  }
+
+  @Override
+  public void compact() {
+    for (Entry entry : removed) {
+      events.remove(entry.start, entry.end, entry);
+      if (eventsByName != null) {
+        unindexName(entry);
+      }
+    }
+    removed.clear();
+  }
+
+  @Override
+  public boolean overlapsAny(long start, long end) {
+    if (removed.isEmpty()) {
+      return events.overlapsAny(start, end);
+    }
+    return events.anyOverlapping(start, end, entry -> !entry.removed);
+  }
+
+  @Override
+  public List<Event> overlapping(long start, long end) {
+    List<Event> result = new ArrayList<>();
+    events.forEachOverlapping(start, end, entry -> {
+      if (!entry.removed) {
+        result.add(entry);
+      }
+    });
+    return result;
+  }
+
+  @Override
+  public long[] boundsOverlapping(long start, long end) {
+    List<Event> matches = overlapping(start, end);
+    long[] bounds = new long[matches.size() * 2];
+    for (int i = 0; i < matches.size(); i++) {
+      bounds[2 * i] = ((Entry) matches.get(i)).start;
+      bounds[2 * i + 1] = ((Entry) matches.get(i)).end;
+    }
+    return bounds;
+  }
+
+  @Override
+  public List<Event> overlappingAfter(
+      long start, long end, long afterStart, long afterId, int limit) {
+    List<Entry> page = new ArrayList<>();
+    // The tree orders equal starts by end, so the whole group at the last start is collected
+    // before the page is ordered by id and cut to size.
+    events.walkOverlapping(start, end, afterStart, entry -> {
+      if (page.size() >= limit && entry.start > page.get(page.size() - 1).start) {
+        return false;
+      }
+      if (!entry.removed && (entry.start > afterStart || entry.id > afterId)) {
+        page.add(entry);
+      }
+      return true;
+    });
+    page.sort(BY_START_AND_ID);
+    return new ArrayList<>(page.subList(0, Math.min(limit, page.size())));
+  }
+
+  @Override
+  public long startOf(Event event) {
+    return ((Entry) event).start;
+  }
+
+  @Override
+  public long endOf(Event event) {
+    return ((Entry) event).end;
+  }
+
+  @Override
+  public List<Event> startingBetween(long from, long to) {
+    List<Event> result = new ArrayList<>();
+    events.forEachOverlapping(from, to, entry -> {
+      if (entry.start >= from && !entry.removed) {
+        result.add(entry);
+      }
+    });
+    return result;
+  }
+
+  @Override
+  public long[] startsBetween(long from, long to) {
+    long[][] found = {new long[16]};
+    int[] count = {0};
+    events.walkOverlapping(from, to, from, entry -> {
+      if (!entry.removed) {
+        if (count[0] == found[0].length) {
+          found[0] = Arrays.copyOf(found[0], count[0] * 2);
+        }
+        found[0][count[0]++] = entry.start;
+      }
+      return true;
+    });
+    return Arrays.copyOf(found[0], count[0]);
+  }
+
+  @Override
+  public List<Event> named(String name, long from, long to) {
+    NavigableMap<Long, List<Entry>> byStart = nameIndex().get(name);
+    List<Event> result = new ArrayList<>();
+    if (byStart != null) {
+      for (List<Entry> bucket : byStart.subMap(from, true, to, true).values()) {
+        for (Entry entry : bucket) {
+          if (!entry.removed) {
+            result.add(entry);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void setClock(ZoneClock clock) {
+    this.clock = clock;
+  }
+
+  @Override
+  public void setProperty(Event event, String property, String newValue) {
+    Entry entry = (Entry) event;
+    boolean rename = "name".equalsIgnoreCase(property) && eventsByName != null;
+    if (rename) {
+      unindexName(entry);
+    }
+    entry.details = entry.details.withProperty(property, newValue);
+    if (rename) {
+      indexName(entry);
+    }
+  }
+
+  /** Returns the name index, first rebuilding it from the tree if a batch add dropped it. */
+  private Map<String, NavigableMap<Long, List<Entry>>> nameIndex() {
+    if (eventsByName == null) {
+      eventsByName = new HashMap<>();
+      events.forEach(this::indexName);
+    }
+    return eventsByName;
+  }
+
+  /** Adds an entry to the name index. */
+  private void indexName(Entry entry) {
+    eventsByName
+        .computeIfAbsent(entry.getName(), n -> new TreeMap<>())
+        .computeIfAbsent(entry.start, t -> new ArrayList<>())
+        .add(entry);
+  }
+
+  /** Removes an entry from the name index, dropping buckets that become empty. */
+  private void unindexName(Entry entry) {
+    NavigableMap<Long, List<Entry>> byStart = eventsByName.get(entry.getName());
+    List<Entry> bucket = byStart.get(entry.start);
+    bucket.remove(entry);
+    if (bucket.isEmpty()) {
+      byStart.remove(entry.start);
+      if (byStart.isEmpty()) {
+        eventsByName.remove(entry.getName());
+      }
+    }
+  }
+
+  /** A stored event. Its wall-clock times are derived from the epoch bounds on each call. */
+  private final class Entry implements Event {
+    private final long id;
+    private final long start;
+    private final long end;
+    private EventDetails details;
+    private boolean removed;
+
+    private Entry(long id, EventDetails details, long start, long end) {
+      this.id = id;
+      this.details = details;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public long getId() {
+      return id;
+    }
+
+    @Override
+    public String getName() {
+      return details.getName();
+    }
+
+    @Override
+    public LocalDateTime getStart() {
+      return clock.toLocalDateTime(start);
+    }
+
+    @Override
+    public LocalDateTime getEnd() {
+      return clock.toLocalDateTime(end);
+    }
+
+    @Override
+    public String getDescription() {
+      return details.getDescription();
+    }
+
+    @Override
+    public String getLocation() {
+      return details.getLocation();
+    }
+
+    @Override
+    public boolean isPublic() {
+      return details.isPublic();
+    }
+  }
+}
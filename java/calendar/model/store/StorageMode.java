@@ -0,0 +1,16 @@
+package calendar.model.store;
+
+import calendar.model.index.ZoneClock;
+
+/** The ways a calendar can keep its events in memory. */
+public enum StorageMode {
+  /** Compact event entries behind an interval tree plus a name index. */
+  INDEXED,
+  /** Primitive columns with dictionary-encoded strings, scanned for each query. */
+  COLUMNAR;
+
+  /** Creates an empty store of this kind that reports times on the given clock. */
+  public EventStore createStore(ZoneClock clock) {
+    return this == COLUMNAR ? new ColumnarEventStore(clock) : new IndexedEventStore(clock);
+  }
+}
@@ -14,9 +14,8 @@ import java.awt.Color;
 import java.awt.Container;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import javax.swing.BorderFactory;
@@ -168,19 +167,22 @@ public class CalendarGUI extends JFrame {
     // Define lavender color (RGB 230, 230, 250)
     Color lavender = new Color(230, 230, 250);
 
+    // Count the whole month's events per day in one pass
+    int[] monthCounts = null;
+    try {
+      monthCounts = controller.countEventsInMonth(YearMonth.from(currentDate));
+    } catch (Exception ex) {
+      System.err.println("Error retrieving events for " + currentDate + ": " + ex.getMessage());
+    }
+
     // Add day buttons with color change if events exist
     for (int day = 1; day <= daysInMonth; day++) {
       JButton dayButton = new JButton(String.valueOf(day));
       LocalDate date = currentDate.withDayOfMonth(day);
-      try {
-        List<Event> events = controller.getEventsOn(date.toString());
-        System.out.println("For date " + date + " found " + events.size() + " events.");
-        if (!events.isEmpty()) {
-          dayButton.setBackground(lavender);
-        }
-      } catch (Exception ex) {
-        System.err.println("Error retrieving events for " + date + ": " + ex.getMessage());
+      if (monthCounts == null) {
         dayButton.setBackground(new Color(255, 200, 200));
+      } else if (monthCounts[day - 1] > 0) {
+        dayButton.setBackground(lavender);
       }
       dayButton.addActionListener((ActionEvent e) -> displayEventsForDay(date));
       monthPanel.add(dayButton);
@@ -225,33 +227,10 @@ public class CalendarGUI extends JFrame {
     JFileChooser chooser = new JFileChooser();
     if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
       String path = chooser.getSelectedFile().getAbsolutePath();
-      try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
-        String line;
-        boolean firstLine = true;
-        while ((line = reader.readLine()) != null) {
-          if (firstLine) {
-            firstLine = false;
-            continue; // Skip header
-          }
-          String[] tokens = line.split(",");
-          if (tokens.length < 9) continue;
-          String subject = tokens[0].replace("\"", "");
-          String startDate = tokens[1].replace("\"", "");
-          String startTime = tokens[2].replace("\"", "");
-          String endDate = tokens[3].replace("\"", "");
-          String endTime = tokens[4].replace("\"", "");
-          String allDay = tokens[5].replace("\"", "");
-          String description = tokens[6].replace("\"", "");
-          String location = tokens[7].replace("\"", "");
-          String startDateTime = startDate + "T" + (allDay.equalsIgnoreCase("True") ? "00:00" : startTime);
-          String endDateTime = endDate + "T" + (allDay.equalsIgnoreCase("True") ? "23:59" : endTime);
-          controller.createSingleEvent(subject, startDateTime, endDateTime, description, location, true, false);
-          CalendarGUI.this.refreshView();
-          JOptionPane.showMessageDialog(this, "Event created successfully!");
-          dispose();
-        }
-        JOptionPane.showMessageDialog(this, "Import successful.");
-        drawMonth();
+      try {
+        String report = CalendarView.formatImportReport(controller.importCalendar(path));
+        refreshView();
+        JOptionPane.showMessageDialog(this, report);
       } catch (Exception ex) {
         JOptionPane.showMessageDialog(this, "Error importing: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
       }
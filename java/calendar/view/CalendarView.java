@@ -1,11 +1,19 @@
 package calendar.view;
 
+import calendar.controller.importer.ImportReport;
+import calendar.model.EventPage;
 import calendar.model.event.Event;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 public class CalendarView {
   private static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
+  private static final DateTimeFormatter dateTimeFormatter =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
 
   public static String formatEventsOn(String date, List<Event> events) {
     if (events.isEmpty()) {
@@ -16,7 +24,7 @@ public class CalendarView {
     for (Event e : events) {
       boolean isAllDay = (e.getStart().getHour() == 0 && e.getStart().getMinute() == 0 &&
           e.getEnd().getHour() == 23 && e.getEnd().getMinute() == 59);
-      sb.append(" - ").append(e.getName());
+      sb.append(" - #").append(e.getId()).append(' ').append(e.getName());
       if (isAllDay) {
         sb.append(" All Day Event ");
       } else {
@@ -31,22 +39,156 @@ public class CalendarView {
     return sb.toString();
   }
 
-  public static String formatEventsBetween(String start, String end, List<Event> events) {
-    if (events.isEmpty()) {
+  /** Formats events gathered from several calendars, prefixing each with its calendar name. */
+  public static String formatCalendarEventsOn(
+      String date, Iterator<Map.Entry<String, Event>> events) {
+    if (!events.hasNext()) {
+      return "No events on " + date;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("Events on ").append(date).append(":\n");
+    while (events.hasNext()) {
+      Map.Entry<String, Event> entry = events.next();
+      appendCalendarEvent(sb, entry.getKey(), entry.getValue());
+    }
+    return sb.toString();
+  }
+
+  /** Formats events gathered from several calendars, prefixing each with its calendar name. */
+  public static String formatCalendarEventsBetween(
+      String start, String end, Iterator<Map.Entry<String, Event>> events) {
+    if (!events.hasNext()) {
       return "No events between " + start + " and " + end;
     }
     StringBuilder sb = new StringBuilder();
     sb.append("Events from ").append(start).append(" to ").append(end).append(":\n");
-    for (Event e : events) {
-      sb.append(" - ")
-          .append(e.getName())
-          .append(" (")
-          .append(timeFormatter.format(e.getStart()))
-          .append(" to ")
-          .append(timeFormatter.format(e.getEnd()))
-          .append(") at ")
-          .append(e.getLocation())
-          .append("\n");
+    while (events.hasNext()) {
+      Map.Entry<String, Event> entry = events.next();
+      appendCalendarEvent(sb, entry.getKey(), entry.getValue());
+    }
+    return sb.toString();
+  }
+
+  private static void appendCalendarEvent(StringBuilder sb, String calendar, Event e) {
+    sb.append(" - [")
+        .append(calendar)
+        .append("] #")
+        .append(e.getId())
+        .append(' ')
+        .append(e.getName())
+        .append(" (")
+        .append(dateTimeFormatter.format(e.getStart()))
+        .append(" to ")
+        .append(dateTimeFormatter.format(e.getEnd()))
+        .append(") at ")
+        .append(e.getLocation())
+        .append("\n");
+  }
+
+  public static String formatEventsBetween(String start, String end, Iterator<Event> events) {
+    if (!events.hasNext()) {
+      return "No events between " + start + " and " + end;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("Events from ").append(start).append(" to ").append(end).append(":\n");
+    while (events.hasNext()) {
+      appendEvent(sb, events.next());
+    }
+    return sb.toString();
+  }
+
+  /** Formats one page of a range query, ending with the option that prints the next page. */
+  public static String formatEventsPage(String start, String end, EventPage page) {
+    if (page.getEvents().isEmpty()) {
+      return "No events between " + start + " and " + end;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("Events from ").append(start).append(" to ").append(end).append(":\n");
+    for (Event e : page.getEvents()) {
+      appendEvent(sb, e);
+    }
+    if (page.hasMore()) {
+      sb.append("More events: --resume ").append(page.getResumeToken()).append("\n");
+    }
+    return sb.toString();
+  }
+
+  private static void appendEvent(StringBuilder sb, Event e) {
+    sb.append(" - #")
+        .append(e.getId())
+        .append(' ')
+        .append(e.getName())
+        .append(" (")
+        .append(timeFormatter.format(e.getStart()))
+        .append(" to ")
+        .append(timeFormatter.format(e.getEnd()))
+        .append(") at ")
+        .append(e.getLocation())
+        .append("\n");
+  }
+
+  /** Formats groups of overlapping events, one numbered group per block. */
+  public static String formatConflicts(List<List<Event>> conflicts) {
+    if (conflicts.isEmpty()) {
+      return "No conflicts found";
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("Conflicts:\n");
+    int number = 1;
+    for (List<Event> group : conflicts) {
+      sb.append("Group ").append(number++).append(" (").append(group.size()).append(" events):\n");
+      for (Event e : group) {
+        sb.append(" - #")
+            .append(e.getId())
+            .append(' ')
+            .append(e.getName())
+            .append(" (")
+            .append(dateTimeFormatter.format(e.getStart()))
+            .append(" to ")
+            .append(dateTimeFormatter.format(e.getEnd()))
+            .append(") at ")
+            .append(e.getLocation())
+            .append("\n");
+      }
+    }
+    return sb.toString();
+  }
+
+  /** Formats per-day event counts starting at the given date, one line per day. */
+  public static String formatEventSummary(String period, LocalDate first, int[] counts) {
+    int total = 0;
+    int busyDays = 0;
+    for (int count : counts) {
+      total += count;
+      busyDays += count > 0 ? 1 : 0;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("Event summary for ").append(period).append(" (").append(total)
+        .append(" events on ").append(busyDays).append(" days):\n");
+    for (int i = 0; i < counts.length; i++) {
+      sb.append(" ").append(first.plusDays(i)).append(": ").append(counts[i]).append("\n");
+    }
+    return sb.toString();
+  }
+
+  /** Formats an import report: the rows imported, the rate and the first rejected rows. */
+  public static String formatImportReport(ImportReport report) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("Imported ").append(report.getImported()).append(" events from ")
+        .append(report.getPath())
+        .append(String.format(" in %.3f s (%.0f rows/s); ",
+            report.getElapsedNanos() / 1e9, report.getRowsPerSecond()))
+        .append(report.getRejected()).append(" rows rejected");
+    if (report.getRejected() == 0) {
+      return sb.toString();
+    }
+    sb.append(":\n");
+    for (String rejection : report.getRejections()) {
+      sb.append(" - ").append(rejection).append("\n");
+    }
+    int unlisted = report.getRejected() - report.getRejections().size();
+    if (unlisted > 0) {
+      sb.append(" - and ").append(unlisted).append(" more\n");
     }
     return sb.toString();
   }
@@ -54,4 +196,20 @@ public class CalendarView {
   public static String formatBusyStatus(String dateTime, boolean busy) {
     return "Status at " + dateTime + ": " + (busy ? "Busy" : "Available");
   }
+
+  public static String formatFreeSlots(int durationMinutes, List<LocalDateTime> slots) {
+    if (slots.isEmpty()) {
+      return "No free slot of " + durationMinutes + " minutes found";
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("Free slots of ").append(durationMinutes).append(" minutes:\n");
+    for (LocalDateTime slot : slots) {
+      sb.append(" - ")
+          .append(dateTimeFormatter.format(slot))
+          .append(" to ")
+          .append(dateTimeFormatter.format(slot.plusMinutes(durationMinutes)))
+          .append("\n");
+    }
+    return sb.toString();
+  }
 }
\ No newline at end of file